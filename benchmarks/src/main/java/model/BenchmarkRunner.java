@@ -0,0 +1,29 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the benchmark jar. Runs JMH with the given command line options and publishes the results as JSON
+ * (to jmh-result.json) unless a result format is given on the command line.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks.
+     * @param args JMH command line options, for example a benchmark name pattern
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add("-rf");
+            options.add("json");
+            if (!options.contains("-rff")) {
+                options.add("-rff");
+                options.add("jmh-result.json");
+            }
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,51 @@
+package model;
+
+import Strategies.Prisoner;
+import Strategies.StrategyRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of InterrogationRoom.simulateGame() for each pairing of the built-in strategies and number of rounds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({"AlwaysComply", "AlwaysExploit", "TitForTat", "PermanentRetaliation"})
+    public String strategy1;
+
+    @Param({"AlwaysComply", "AlwaysExploit", "TitForTat", "PermanentRetaliation"})
+    public String strategy2;
+
+    @Param({"1", "10", "100", "1000"})
+    public int rounds;
+
+    /** Whether games between deterministic strategies may be served from the payoff cache */
+    @Param({"false", "true"})
+    public boolean payoffCache;
+
+    private Evolution evo;
+    private Prisoner prisoner1;
+    private Prisoner prisoner2;
+
+    @Setup
+    public void setUp() throws Exception {
+        // a random weight disables the payoff cache of the simulation, the games themselves use a fixed weight
+        evo = new Evolution(new HashMap<>(), 2, 1, 1, payoffCache ? .95 : null, 10, 0, 7, 3);
+        prisoner1 = StrategyRegistry.forName(strategy1).get();
+        prisoner2 = StrategyRegistry.forName(strategy2).get();
+    }
+
+    @Benchmark
+    public double simulateGame() {
+        new InterrogationRoom(rounds, prisoner1, prisoner2, .95, evo).simulateGame();
+        return prisoner1.getCumulativeScore();
+    }
+}
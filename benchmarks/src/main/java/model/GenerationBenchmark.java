@@ -0,0 +1,39 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a whole Evolution.doGeneration() for a population split evenly between the built-in strategies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int populationSize;
+
+    private Evolution evo;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("AlwaysComply", populationSize / 4);
+        popInit.put("AlwaysExploit", populationSize / 4);
+        popInit.put("TitForTat", populationSize / 4);
+        popInit.put("PermanentRetaliation", populationSize - 3 * (populationSize / 4));
+        evo = new Evolution(popInit, 10, 1, 1, .95, 10, 0, 7, 3);
+    }
+
+    @Benchmark
+    public Object doGeneration() throws Exception {
+        evo.doGeneration();
+        return evo.getPopulation();
+    }
+}
@@ -0,0 +1,74 @@
+package model;
+
+import Strategies.Prisoner;
+import Strategies.StrategyRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Time of the selection phase of a generation on its own: choosing the survivors and creating the offspring.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectionBenchmark {
+
+    @Param({"1000", "100000"})
+    public int populationSize;
+
+    @Param({"truncation", "tournament", "proportional"})
+    public String operator;
+
+    private SelectionOperator selection;
+    private Prisoner[] prisoners;
+    private double[] scores;
+    private Prisoner[] population;
+    private double[] fitness;
+    private Prisoner[] next;
+    private Random r;
+
+    @Setup
+    public void setUp() throws Exception {
+        switch (operator) {
+            case "tournament":
+                selection = new TournamentSelection(2);
+                break;
+            case "proportional":
+                selection = new FitnessProportionalSelection();
+                break;
+            default:
+                selection = new TruncationSelection();
+        }
+
+        Supplier<Prisoner> factory = StrategyRegistry.forName("TitForTat");
+        r = new Random(1);
+        prisoners = new Prisoner[populationSize];
+        scores = new double[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            prisoners[i] = factory.get();
+            scores[i] = r.nextDouble() * populationSize;
+        }
+        population = new Prisoner[populationSize];
+        fitness = new double[populationSize];
+        next = new Prisoner[populationSize];
+    }
+
+    @Setup(Level.Invocation)
+    public void restorePopulation() {
+        // selection reorders the population, so every invocation starts from the same unordered generation
+        System.arraycopy(prisoners, 0, population, 0, populationSize);
+        System.arraycopy(scores, 0, fitness, 0, populationSize);
+    }
+
+    @Benchmark
+    public Prisoner[] select() throws Exception {
+        selection.select(population, fitness, next, r);
+        return next;
+    }
+}
@@ -5,6 +5,14 @@ package Strategies;
  */
 public class AlwaysComply extends Prisoner {
 
+    private static final long serialVersionUID = 1L;
+
+    /** A single state that complies whatever the opponent does */
+    private static final FsmTable TABLE = new FsmTable(
+            new boolean[] {false},
+            new int[] {0},
+            new int[] {0});
+
     /**
      * Gets the next decision for this prisoner.
      *
@@ -14,4 +22,24 @@ public class AlwaysComply extends Prisoner {
     public boolean choose() {
         return COMPLY;
     }
+
+    /**
+     * Declares that the choices of this prisoner only depend on the current game.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * The transition table playing exactly like this class.
+     *
+     * @return the transition table of the strategy
+     */
+    @Override
+    public FsmTable getFsmTable() {
+        return TABLE;
+    }
 }
@@ -5,6 +5,14 @@ package Strategies;
  */
 public class AlwaysExploit extends Prisoner {
 
+    private static final long serialVersionUID = 1L;
+
+    /** A single state that exploits whatever the opponent does */
+    private static final FsmTable TABLE = new FsmTable(
+            new boolean[] {true},
+            new int[] {0},
+            new int[] {0});
+
     /**
      * Gets the next decision for this prisoner.
      *
@@ -14,4 +22,24 @@ public class AlwaysExploit extends Prisoner {
     public boolean choose() {
         return EXPLOIT;
     }
+
+    /**
+     * Declares that the choices of this prisoner only depend on the current game.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * The transition table playing exactly like this class.
+     *
+     * @return the transition table of the strategy
+     */
+    @Override
+    public FsmTable getFsmTable() {
+        return TABLE;
+    }
 }
@@ -0,0 +1,74 @@
+package Strategies;
+
+import java.io.Serializable;
+
+/**
+ * Transition table of a strategy that is a finite state machine.
+ * Every state has a move, and every state has a successor for each move the opponent can make. Games start in state 0.
+ * The table is compiled into two flat arrays with moves encoded as 0 (comply) and 1 (exploit), so a game between two
+ * tables can be played with array lookups only.
+ */
+public final class FsmTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Encoded move of a prisoner that complies */
+    public static final int COMPLY = 0;
+    /** Encoded move of a prisoner that exploits */
+    public static final int EXPLOIT = 1;
+
+    /** The encoded move of each state */
+    private final int[] moves;
+    /** The next state of each state, at 2 * state + encoded move of the opponent */
+    private final int[] transitions;
+
+    /**
+     * Compile a transition table.
+     * @param moves the move of each state, true if the prisoner exploits in that state
+     * @param nextOnComply the next state of each state if the opponent complied
+     * @param nextOnExploit the next state of each state if the opponent exploited
+     */
+    public FsmTable(boolean[] moves, int[] nextOnComply, int[] nextOnExploit) {
+        int numStates = moves.length;
+        if (numStates == 0)
+            throw new IllegalArgumentException("A transition table needs at least one state");
+        if (nextOnComply.length != numStates || nextOnExploit.length != numStates)
+            throw new IllegalArgumentException("Every state needs a next state for both opponent moves");
+
+        this.moves = new int[numStates];
+        this.transitions = new int[2 * numStates];
+        for (int state = 0; state < numStates; state++) {
+            if (nextOnComply[state] < 0 || nextOnComply[state] >= numStates
+                    || nextOnExploit[state] < 0 || nextOnExploit[state] >= numStates)
+                throw new IllegalArgumentException("Next state of state " + state + " does not exist");
+
+            this.moves[state] = moves[state] ? EXPLOIT : COMPLY;
+            this.transitions[2 * state + COMPLY] = nextOnComply[state];
+            this.transitions[2 * state + EXPLOIT] = nextOnExploit[state];
+        }
+    }
+
+    /**
+     * @return number of states in the table
+     */
+    public int getNumStates() {
+        return moves.length;
+    }
+
+    /**
+     * @param state a state of the table
+     * @return the encoded move of the state, COMPLY or EXPLOIT
+     */
+    public int move(int state) {
+        return moves[state];
+    }
+
+    /**
+     * @param state a state of the table
+     * @param opponentMove the encoded move of the opponent, COMPLY or EXPLOIT
+     * @return the next state
+     */
+    public int next(int state, int opponentMove) {
+        return transitions[2 * state + opponentMove];
+    }
+}
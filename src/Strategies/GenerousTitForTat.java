@@ -0,0 +1,13 @@
+package Strategies;
+
+/**
+ * Strategies.Prisoner that plays tit for tat, but forgives an exploit with a probability of one third.
+ */
+public class GenerousTitForTat extends MemoryOnePrisoner {
+
+    private static final long serialVersionUID = 1L;
+
+    public GenerousTitForTat() {
+        super(1, 1, 1. / 3, 1, 1. / 3);
+    }
+}
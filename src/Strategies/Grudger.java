@@ -0,0 +1,72 @@
+package Strategies;
+
+/**
+ * Strategies.Prisoner that complies with every opponent until that opponent exploits it, and from then on always
+ * exploits that opponent, in this game and every later one. The grudges are kept in the opponent memory of the
+ * simulation; without one (outside of a simulation) a grudge only lasts for the current game.
+ */
+public class Grudger extends Prisoner {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Identifier of the current opponent */
+    private int opponent = -1;
+    /** Whether the current opponent exploited this prisoner during the current game */
+    private boolean wronged = false;
+
+    /**
+     * Gets the next decision for this prisoner.
+     *
+     * @return true if the prisoner exploits, false if complies
+     */
+    @Override
+    public boolean choose() {
+        OpponentMemory memory = getOpponentMemory();
+        if (memory != null && memory.contains(opponent) && memory.get(getPrisonerId(), opponent))
+            return EXPLOIT;
+        return wronged;
+    }
+
+    /**
+     * Notifies this prisoner of the other prisoner's choice in the round.
+     *
+     * @param choice choice of the opposing player
+     */
+    @Override
+    public void notifyOpponentChoice(boolean choice) {
+        if (choice == EXPLOIT) {
+            wronged = true;
+            OpponentMemory memory = getOpponentMemory();
+            if (memory != null && memory.contains(opponent))
+                memory.set(getPrisonerId(), opponent, true);
+        }
+    }
+
+    /**
+     * Called when the game is over so the prisoner may reset relevant information.
+     */
+    @Override
+    public void notifyGameOver() {
+        wronged = false;
+    }
+
+    /**
+     * Called at the start of any game.
+     *
+     * @param prisonerObjectHash identifier of the opponent
+     */
+    @Override
+    public void notifyOtherPrisoner(int prisonerObjectHash) {
+        opponent = prisonerObjectHash;
+    }
+
+    /**
+     * Asks for the opponent memory of the simulation to keep the grudges in.
+     *
+     * @return true
+     */
+    @Override
+    public boolean usesOpponentMemory() {
+        return true;
+    }
+}
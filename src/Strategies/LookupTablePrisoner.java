@@ -0,0 +1,202 @@
+package Strategies;
+
+import java.util.SplittableRandom;
+
+/**
+ * Strategies.Prisoner whose strategy is a lookup table on the last few rounds of the game, so that a population can
+ * evolve strategies of its own instead of only reshuffling the hand-written ones.
+ * <p>
+ * With a memory of n rounds, every round adds two bits to the history (its own choice, then the opponent's choice, 1
+ * if exploited), and the history of the last n rounds selects one of the 4^n bits of the genome, a 1 meaning exploit.
+ * Rounds before the start of the game count as rounds in which both complied. Both the history and the genome are
+ * primitives, so choosing a move is a shift and a mask. A memory of at most 3 rounds keeps the genome in a long.
+ * <p>
+ * Offspring inherit the genome with every bit flipped with the mutation rate, and, with the crossover rate, the bits
+ * above a random point taken from the genome of a mate with the same memory. The simulation seeds the random stream of
+ * every offspring from its own random source, so a seeded simulation evolves the same genomes on every run and
+ * different seeds evolve different genomes. Offspring created without a seed (evolve() and evolve(Prisoner)) draw
+ * their stream from the genomes of both parents and the number of offspring the prisoner had, so the same calls on
+ * the same prisoners always create the same genomes. The genome is not part of the class, so these prisoners cannot
+ * play in a sharded tournament or on a lattice, which only recreate prisoners by class.
+ */
+public class LookupTablePrisoner extends Prisoner {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Largest memory whose genome fits in a long */
+    public static final int MAX_MEMORY = 3;
+    /** Memory of the prisoners created by the default constructor */
+    public static final int DEFAULT_MEMORY = 3;
+    /** Mutation rate of the prisoners created by the default constructor, one bit of the genome on average */
+    public static final double DEFAULT_MUTATION_RATE = 1. / 64;
+    /** Crossover rate of the prisoners created by the default constructor */
+    public static final double DEFAULT_CROSSOVER_RATE = .5;
+
+    /** Number of rounds remembered */
+    private final int memory;
+    /** The move (1 if exploit) for every history */
+    private final long genome;
+    /** Selects the bits of the last memory rounds of the history */
+    private final int historyMask;
+    /** Probability that a bit of the genome flips in an offspring */
+    private final double mutationRate;
+    /** Probability that an offspring is a crossover with the mate */
+    private final double crossoverRate;
+    /** The choices of the last rounds of the current game, two bits per round, the latest round lowest */
+    private int history = 0;
+    /** The choice made in the current round */
+    private boolean lastChoice;
+    /** Number of offspring created without a seed, so that each of them gets a different random stream */
+    private long offspringCreated = 0;
+
+    /**
+     * Create a prisoner with a memory of 3 rounds playing tit for tat, which evolves into other strategies through
+     * mutation and crossover.
+     */
+    public LookupTablePrisoner() {
+        this(DEFAULT_MEMORY, titForTat(DEFAULT_MEMORY), DEFAULT_MUTATION_RATE, DEFAULT_CROSSOVER_RATE);
+    }
+
+    /**
+     * Create a prisoner with a lookup table.
+     * @param memory number of rounds remembered, from 0 up to MAX_MEMORY
+     * @param genome the move (1 if exploit) for every history, only the lowest 4^memory bits are used
+     * @param mutationRate probability that a bit of the genome flips in an offspring
+     * @param crossoverRate probability that an offspring is a crossover with the mate
+     */
+    public LookupTablePrisoner(int memory, long genome, double mutationRate, double crossoverRate) {
+        if (memory < 0 || memory > MAX_MEMORY)
+            throw new IllegalArgumentException("The memory must be between 0 and " + MAX_MEMORY + ": " + memory);
+        if (!(mutationRate >= 0 && mutationRate <= 1))
+            throw new IllegalArgumentException("The mutation rate must be between 0 and 1: " + mutationRate);
+        if (!(crossoverRate >= 0 && crossoverRate <= 1))
+            throw new IllegalArgumentException("The crossover rate must be between 0 and 1: " + crossoverRate);
+        this.memory = memory;
+        this.genome = genome & genomeMask(memory);
+        this.historyMask = (1 << 2 * memory) - 1;
+        this.mutationRate = mutationRate;
+        this.crossoverRate = crossoverRate;
+    }
+
+    /**
+     * @param memory number of rounds remembered
+     * @return the genome that plays whatever the opponent played in the previous round
+     */
+    public static long titForTat(int memory) {
+        // the opponent's last choice is the lowest bit of the history, so every odd history exploits
+        return 0xaaaaaaaaaaaaaaaaL & genomeMask(memory);
+    }
+
+    /**
+     * @return the bits of the genome used with a memory
+     */
+    private static long genomeMask(int memory) {
+        int bits = 1 << 2 * memory;
+        return bits == 64 ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * @return number of rounds remembered
+     */
+    public final int getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return the move (1 if exploit) for every history
+     */
+    public final long getGenome() {
+        return genome;
+    }
+
+    /**
+     * Gets the next decision for this prisoner.
+     * @return true if the prisoner exploits, false if complies
+     */
+    @Override
+    public final boolean choose() {
+        lastChoice = (genome >>> history & 1) != 0;
+        return lastChoice;
+    }
+
+    /**
+     * Notifies this prisoner of the other prisoner's choice in the round.
+     * @param choice choice of the opposing player
+     */
+    @Override
+    public final void notifyOpponentChoice(boolean choice) {
+        history = (history << 2 | (lastChoice ? 2 : 0) | (choice ? 1 : 0)) & historyMask;
+    }
+
+    /**
+     * Called when the game is over so the prisoner forgets the rounds of the game.
+     */
+    @Override
+    public final void notifyGameOver() {
+        history = 0;
+    }
+
+    /**
+     * Creates an offspring through mutation alone.
+     * @return new prisoner object
+     */
+    @Override
+    public Prisoner evolve() {
+        return evolve(this);
+    }
+
+    /**
+     * Creates an offspring through crossover with the mate (if it has the same memory) and mutation, with a random
+     * stream derived from the genomes of both parents and the number of offspring this prisoner created this way.
+     * @param mate another parent chosen by the selection
+     * @return new prisoner object
+     */
+    @Override
+    public Prisoner evolve(Prisoner mate) {
+        long mateGenome = mate instanceof LookupTablePrisoner ? ((LookupTablePrisoner) mate).genome : 0;
+        return evolve(mate, genome ^ Long.rotateLeft(mateGenome, 32) ^ ++offspringCreated * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Creates an offspring through crossover with the mate (if it has the same memory) and mutation.
+     * @param mate another parent chosen by the selection
+     * @param seed seed of the random stream of the offspring
+     * @return new prisoner object
+     */
+    @Override
+    public Prisoner evolve(Prisoner mate, long seed) {
+        return evolve(mate, new SplittableRandom(seed));
+    }
+
+    /**
+     * @return true, the genome is the strategy
+     */
+    @Override
+    public final boolean hasGenome() {
+        return true;
+    }
+
+    /**
+     * Creates an offspring through crossover with the mate (if it has the same memory) and mutation.
+     * @param mate another parent chosen by the selection
+     * @param random the random stream of the offspring
+     * @return new prisoner object
+     */
+    private Prisoner evolve(Prisoner mate, SplittableRandom random) {
+        int bits = 1 << 2 * memory;
+        long child = genome;
+
+        if (mate instanceof LookupTablePrisoner && ((LookupTablePrisoner) mate).memory == memory
+                && random.nextDouble() < crossoverRate) {
+            // the bits below the point come from this prisoner, the bits above it from the mate
+            long below = (1L << random.nextInt(bits)) - 1;
+            child = child & below | ((LookupTablePrisoner) mate).genome & ~below;
+        }
+
+        for (int bit = 0; bit < bits; bit++) {
+            if (random.nextDouble() < mutationRate)
+                child ^= 1L << bit;
+        }
+        return new LookupTablePrisoner(memory, child, mutationRate, crossoverRate);
+    }
+}
@@ -0,0 +1,119 @@
+package Strategies;
+
+/**
+ * Class representing a stochastic prisoner that only remembers the previous round. The strategy is the probability
+ * of complying in the first round, and the probability of complying after each of the four outcomes of the previous
+ * round (its own choice and the opponent's choice, as far as it perceived it). Because the five probabilities
+ * describe the complete strategy, the simulator evaluates games between two of these prisoners as a Markov chain,
+ * paying each prisoner its exact expected payoff instead of sampling the rounds.
+ * <p>
+ * Against other prisoners the rounds are played and sampled, from the random stream the simulation seeds for every
+ * game, so a seeded simulation plays the same games whichever thread plays them.
+ */
+public abstract class MemoryOnePrisoner extends Prisoner {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Probability of complying in the first round */
+    private final double initial;
+    /** Probability of complying after each outcome, at 2 * own choice + opponent's choice (1 if exploited) */
+    private final double[] comply;
+    /** Outcome of the previous round encoded like comply, -1 in the first round */
+    private int previous = -1;
+    /** The choice made in the current round */
+    private boolean lastChoice;
+    /** State of the random stream of the current game (SplitMix64) */
+    private long randomState;
+
+    /**
+     * Create a memory-one prisoner.
+     * @param initial probability of complying in the first round
+     * @param afterComplyComply probability of complying after both prisoners complied
+     * @param afterComplyExploit probability of complying after this prisoner complied and the opponent exploited
+     * @param afterExploitComply probability of complying after this prisoner exploited and the opponent complied
+     * @param afterExploitExploit probability of complying after both prisoners exploited
+     */
+    protected MemoryOnePrisoner(double initial, double afterComplyComply, double afterComplyExploit,
+                                double afterExploitComply, double afterExploitExploit) {
+        this.initial = checkProbability(initial);
+        this.comply = new double[] {checkProbability(afterComplyComply), checkProbability(afterComplyExploit),
+                checkProbability(afterExploitComply), checkProbability(afterExploitExploit)};
+    }
+
+    private static double checkProbability(double probability) {
+        if (!(probability >= 0 && probability <= 1))
+            throw new IllegalArgumentException("A probability must be between 0 and 1: " + probability);
+        return probability;
+    }
+
+    /**
+     * @return the probability of complying in the first round
+     */
+    public final double getInitialComply() {
+        return initial;
+    }
+
+    /**
+     * @param exploited true if this prisoner exploited in the previous round
+     * @param opponentExploited true if the opponent exploited in the previous round
+     * @return the probability of complying after the outcome
+     */
+    public final double getComply(boolean exploited, boolean opponentExploited) {
+        return comply[(exploited ? 2 : 0) + (opponentExploited ? 1 : 0)];
+    }
+
+    /**
+     * Gets the next decision for this prisoner.
+     * @return true if the prisoner exploits, false if complies
+     */
+    @Override
+    public final boolean choose() {
+        double probability = previous < 0 ? initial : comply[previous];
+        lastChoice = !(nextDouble() < probability);
+        return lastChoice;
+    }
+
+    /**
+     * Notifies this prisoner of the other prisoner's choice in the round.
+     * @param choice choice of the opposing player
+     */
+    @Override
+    public final void notifyOpponentChoice(boolean choice) {
+        previous = (lastChoice ? 2 : 0) + (choice ? 1 : 0);
+    }
+
+    /**
+     * Called at the start of a sampled game to seed the random stream of the game.
+     * @param seed seed of the random stream of the game
+     */
+    @Override
+    public final void notifyGameSeed(long seed) {
+        randomState = seed;
+    }
+
+    /**
+     * Called when the game is over so the prisoner forgets the previous round.
+     */
+    @Override
+    public final void notifyGameOver() {
+        previous = -1;
+    }
+
+    /**
+     * @return true, the choices are random unless every probability is 0 or 1
+     */
+    @Override
+    public final boolean isStochastic() {
+        return true;
+    }
+
+    /**
+     * @return the next uniform double in [0, 1) of the random stream of the game
+     */
+    private double nextDouble() {
+        long z = (randomState += 0x9e3779b97f4a7c15L);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return ((z ^ (z >>> 31)) >>> 11) * 0x1.0p-53;
+    }
+}
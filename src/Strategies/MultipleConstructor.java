@@ -5,6 +5,7 @@ package Strategies;
  * THIS IS A CORRECT PRISONER IMPLEMENTATION THAT WILL FUNCTION PROPERLY.
  * @author AdamVD  avdonle@gmail.com
  */
+@SuppressWarnings("serial")
 public class MultipleConstructor extends Prisoner {
 
     private boolean choice;
@@ -5,6 +5,7 @@ package Strategies;
  * THIS IS AN INCORRECT PRISONER IMPLEMENTATION THAT WILL BREAK THE SIMULATOR.
  * @author AdamVD  avdonle@gmail.com
  */
+@SuppressWarnings("serial")
 public class NoDefaultConstructor extends Prisoner {
 
     private boolean choice;
@@ -0,0 +1,85 @@
+package Strategies;
+
+import java.io.Serializable;
+
+/**
+ * One bit per pair of prisoners, shared by all prisoners of a simulation that asked for it through
+ * Prisoner.usesOpponentMemory(). The bits are indexed by the prisoner ids the simulation assigns, so a strategy can
+ * remember something about every opponent (such as a grudge) without a map of its own.
+ * Each prisoner has a row of its own: a prisoner only plays one game at a time, so prisoners may write their own row
+ * while games are played on multiple threads.
+ */
+public final class OpponentMemory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of prisoner ids the memory has room for */
+    private final int capacity;
+    /** Number of longs in each row */
+    private final int wordsPerRow;
+    /** The bits, row by row */
+    private final long[] bits;
+
+    /**
+     * Create an empty memory.
+     * @param capacity number of prisoner ids the memory has room for
+     */
+    public OpponentMemory(int capacity) {
+        this.capacity = capacity;
+        this.wordsPerRow = (capacity + 63) >>> 6;
+        this.bits = new long[Math.multiplyExact(capacity, wordsPerRow)];
+    }
+
+    /**
+     * @return number of prisoner ids the memory has room for
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param id a prisoner id
+     * @return true if the memory has room for the id
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < capacity;
+    }
+
+    /**
+     * @param owner id of the prisoner remembering
+     * @param opponent id of the prisoner remembered
+     * @return the bit the owner stored for the opponent, false if never set
+     */
+    public boolean get(int owner, int opponent) {
+        return (bits[owner * wordsPerRow + (opponent >>> 6)] & (1L << opponent)) != 0;
+    }
+
+    /**
+     * @param owner id of the prisoner remembering
+     * @param opponent id of the prisoner remembered
+     * @param value the bit to store
+     */
+    public void set(int owner, int opponent, boolean value) {
+        int word = owner * wordsPerRow + (opponent >>> 6);
+        if (value)
+            bits[word] |= 1L << opponent;
+        else
+            bits[word] &= ~(1L << opponent);
+    }
+
+    /**
+     * Clears everything the prisoner with an id remembers and everything remembered about it, called by the
+     * simulation before it gives the id to a new prisoner.
+     * @param id the prisoner id
+     */
+    public void forget(int id) {
+        int row = id * wordsPerRow;
+        for (int word = 0; word < wordsPerRow; word++)
+            bits[row + word] = 0;
+
+        int column = id >>> 6;
+        long mask = ~(1L << id);
+        for (int owner = 0; owner < capacity; owner++)
+            bits[owner * wordsPerRow + column] &= mask;
+    }
+}
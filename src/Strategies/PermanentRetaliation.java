@@ -5,6 +5,17 @@ package Strategies;
  */
 public class PermanentRetaliation extends Prisoner {
 
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * State 0 complies and state 1 exploits. The prisoner moves to state 1 when exploited and, like choose(), returns
+     * to state 0 when the opponent complies again.
+     */
+    private static final FsmTable TABLE = new FsmTable(
+            new boolean[] {false, true},
+            new int[] {0, 0},
+            new int[] {1, 1});
+
     private boolean beenExploited = false;
 
     /**
@@ -34,4 +45,24 @@ public class PermanentRetaliation extends Prisoner {
     public void notifyGameOver() {
         beenExploited = false;
     }
+
+    /**
+     * Declares that the choices of this prisoner only depend on the current game.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * The transition table playing exactly like this class.
+     *
+     * @return the transition table of the strategy
+     */
+    @Override
+    public FsmTable getFsmTable() {
+        return TABLE;
+    }
 }
@@ -1,17 +1,29 @@
 package Strategies;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.text.DecimalFormat;
 
 /**
  * Class representing the structure required for a prisoner.
  * Created by avdon on 5/12/2017.
  */
-public abstract class Prisoner {
+public abstract class Prisoner implements Serializable {
 
-    final boolean EXPLOIT = true;
-    final boolean COMPLY = false;
-    private double score=0;
-    private double cumulativeScore=0;
+    private static final long serialVersionUID = 1L;
+
+    static final boolean EXPLOIT = true;
+    static final boolean COMPLY = false;
+    /**
+     * The board holding the scores of this prisoner at its prisoner id and the opponent memory, the board of the
+     * simulation or, for a prisoner used on its own, a board of its own
+     */
+    private transient ScoreBoard scoreBoard;
+    /** The dense id of this prisoner's strategy, not serialized as ids only hold within one JVM */
+    private transient int strategyId = StrategyRegistry.getId(getClass());
+    /** The id the simulation assigned to this prisoner, -1 if none */
+    private int prisonerId = -1;
 
     /**
      * Gets the next decision for this prisoner.
@@ -24,8 +36,7 @@ public abstract class Prisoner {
      * @param result points earned during the last round of the game
      */
     public final void updateScore(double result) {
-        score += result;
-        cumulativeScore +=result;
+        scores().add(scoreIndex(), result);
     }
 
     /**
@@ -33,7 +44,7 @@ public abstract class Prisoner {
      * @return the score for this prisoner
      */
     public final double getScore() {
-        return score;
+        return scoreBoard != null ? scoreBoard.getScore(scoreIndex()) : 0;
     }
 
     /**
@@ -41,7 +52,23 @@ public abstract class Prisoner {
      * @return the cumulative score of this prisoner throughout all games
      */
     public final double getCumulativeScore() {
-        return cumulativeScore;
+        return scoreBoard != null ? scoreBoard.getCumulativeScore(scoreIndex()) : 0;
+    }
+
+    /**
+     * @return the board holding the scores of this prisoner, creating a board of its own if it is used on its own
+     */
+    private ScoreBoard scores() {
+        if (scoreBoard == null)
+            scoreBoard = new ScoreBoard(scoreIndex() + 1);
+        return scoreBoard;
+    }
+
+    /**
+     * @return the index of this prisoner's scores on its board: its prisoner id, or 0 without one
+     */
+    private int scoreIndex() {
+        return Math.max(prisonerId, 0);
     }
 
     /**
@@ -59,7 +86,8 @@ public abstract class Prisoner {
      * Called when a game ends to reset the game score counter
      */
     public final void resetGameScore() {
-        score = 0;
+        if (scoreBoard != null)
+            scoreBoard.resetScore(scoreIndex());
     }
 
     /**
@@ -71,28 +99,166 @@ public abstract class Prisoner {
      * Called when a generation ends to reset the cumulative score.
      */
     public final void resetCumulativeScore() {
-        cumulativeScore = 0;
+        if (scoreBoard != null)
+            scoreBoard.resetCumulativeScore(scoreIndex());
     }
 
     /**
      * Called at the start of any game. Allows a prisoner strategy to keep a memory of who they played against.
-     * @param prisonerObjectHash unique integer hash code value of the prisoner to be used as identification
+     * @param prisonerObjectHash identification of the opponent: its prisoner id if the simulation assigned one (see
+     *                           getPrisonerId()), otherwise its hash code
      */
     public void notifyOtherPrisoner(int prisonerObjectHash) {
     }
 
+    /**
+     * Called at the start of any game played round by round in which this prisoner may draw random numbers (see
+     * isStochastic()), with the seed the simulation drew for the game from its own random source.
+     * @param seed seed of the random stream of the game
+     */
+    public void notifyGameSeed(long seed) {
+    }
+
+    /**
+     * Getter for the strategy id.
+     * @return the dense id StrategyRegistry gave the class of this prisoner
+     */
+    public final int getStrategyId() {
+        return strategyId;
+    }
+
+    /**
+     * Getter for the prisoner id. A simulation numbers its prisoners densely from 0, a prisoner keeps its id for as
+     * long as it is part of the simulation, and the id of a prisoner that died is given to a new prisoner.
+     * @return the id the simulation assigned to this prisoner, -1 if none
+     */
+    public final int getPrisonerId() {
+        return prisonerId;
+    }
+
+    /**
+     * Called by the simulation (or whoever plays a batch of prisoners) to give this prisoner its id on a score board.
+     * The scores of the prisoner move along to its entry on the board.
+     * @param prisonerId the id of this prisoner on the board
+     * @param scoreBoard the score board of the simulation
+     */
+    public final void assignId(int prisonerId, ScoreBoard scoreBoard) {
+        double score = getScore();
+        double cumulativeScore = getCumulativeScore();
+        this.prisonerId = prisonerId;
+        this.scoreBoard = scoreBoard;
+        scoreBoard.set(prisonerId, score, cumulativeScore);
+    }
+
+    /**
+     * @param scoreBoard a score board
+     * @return true if this prisoner has an id on the board
+     */
+    public final boolean isOn(ScoreBoard scoreBoard) {
+        return prisonerId >= 0 && this.scoreBoard == scoreBoard;
+    }
+
+    /**
+     * Getter for the opponent memory, in which this prisoner may keep a bit for every opponent at its own row
+     * (getPrisonerId()). Only available if the strategy asks for it with usesOpponentMemory().
+     * @return the opponent memory of the simulation, null if this prisoner has none
+     */
+    protected final OpponentMemory getOpponentMemory() {
+        return prisonerId >= 0 && scoreBoard != null && usesOpponentMemory() ? scoreBoard.getOpponentMemory() : null;
+    }
+
+    /**
+     * Declares whether the strategy needs the opponent memory of the simulation.
+     * @return true if the strategy uses the opponent memory, false by default
+     */
+    public boolean usesOpponentMemory() {
+        return false;
+    }
+
+    /**
+     * Declares whether every game this prisoner plays depends only on its class, the number of rounds and the weight.
+     * A deterministic strategy may keep state during a game but must reset it in notifyGameOver(), and must not depend
+     * on the opponent's identity or on its own score. The simulator then plays each pairing of deterministic classes
+     * once and reuses the payoffs instead of replaying the rounds.
+     * @return true if the strategy is deterministic per game, false by default
+     */
+    public boolean isDeterministic() {
+        return false;
+    }
+
+    /**
+     * The transition table of a strategy that a finite state machine describes completely: the prisoner starts every
+     * game in state 0, plays the move of its current state and moves to the next state given the opponent's choice.
+     * The simulator may then play games on the table instead of calling the prisoner every round. It only does so for
+     * prisoners of exactly the class that returns the table, so a subclass that overrides choose() is still called.
+     * @return the transition table, null by default
+     */
+    public FsmTable getFsmTable() {
+        return null;
+    }
+
+    /**
+     * Declares whether the strategy makes random choices during a game. A stochastic strategy must draw them from the
+     * random stream seeded by notifyGameSeed(), so a seeded simulation plays the same games on every run.
+     * @return true if the strategy is stochastic, false by default
+     */
+    public boolean isStochastic() {
+        return false;
+    }
+
     /**
      * Duplicate prisoner and evolve with new traits if applicable.
+     * By default a new prisoner of the same class is created through the StrategyRegistry factory.
      * @return new prisoner object
      */
     public Prisoner evolve() throws IllegalAccessException, InstantiationException {
-        return this.getClass().newInstance();
+        return StrategyRegistry.newInstance(this.getClass());
+    }
+
+    /**
+     * Duplicate prisoner, recombining its traits with those of a mate if applicable.
+     * By default the mate is ignored and evolve() is called.
+     * @param mate another parent chosen by the selection, possibly of a different strategy or this prisoner itself
+     * @return new prisoner object
+     */
+    public Prisoner evolve(Prisoner mate) throws IllegalAccessException, InstantiationException {
+        return evolve();
+    }
+
+    /**
+     * Duplicate prisoner, recombining its traits with those of a mate and mutating them with a random stream seeded
+     * by the simulation. The simulation only calls it for prisoners with a genome (see hasGenome()).
+     * By default the seed is ignored and evolve(Prisoner) is called.
+     * @param mate another parent chosen by the selection, possibly of a different strategy or this prisoner itself
+     * @param seed seed of the random stream of the offspring, drawn from the random source of the simulation
+     * @return new prisoner object
+     */
+    public Prisoner evolve(Prisoner mate, long seed) throws IllegalAccessException, InstantiationException {
+        return evolve(mate);
+    }
+
+    /**
+     * Declares whether the strategy of this prisoner is a genome of its own rather than its class, such as a genome
+     * that mutates from one generation to the next. Simulators that recreate prisoners from their class alone cannot
+     * run these prisoners.
+     * @return true if the prisoner has a genome, false by default
+     */
+    public boolean hasGenome() {
+        return false;
+    }
+
+    /**
+     * Looks the strategy id up again after deserialization, as it may differ from the id in the writing JVM.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        strategyId = StrategyRegistry.getId(getClass());
     }
 
     @Override
     public final String toString() {
         DecimalFormat round = new DecimalFormat("#,###.##");
-        return this.getClass().getSimpleName() + " with a score of " + round.format(cumulativeScore);
+        return this.getClass().getSimpleName() + " with a score of " + round.format(getCumulativeScore());
     }
 
 }
@@ -0,0 +1,111 @@
+package Strategies;
+
+import java.util.Arrays;
+
+/**
+ * The scores of all prisoners of a simulation, in two arrays indexed by prisoner id. The prisoners of a simulation
+ * delegate their score getters to the board, so the simulation reads the fitness of the whole population from one
+ * contiguous array and resets it with a single fill instead of visiting every prisoner.
+ * Each prisoner only writes its own entries, and a prisoner only plays one game at a time, so games may be played on
+ * multiple threads.
+ * <p>
+ * The board also carries the opponent memory of the simulation, so a prisoner reaches everything the simulation keeps
+ * by its id through a single reference.
+ */
+public final class ScoreBoard {
+
+    /** Score of each prisoner in its current game */
+    private final double[] scores;
+    /** Score of each prisoner over all games of the current generation */
+    private final double[] cumulativeScores;
+    /** The opponent memory of the simulation, null until a prisoner asks for it */
+    private OpponentMemory opponentMemory;
+
+    /**
+     * Create a board of zero scores.
+     * @param capacity number of prisoner ids the board has room for
+     */
+    public ScoreBoard(int capacity) {
+        this.scores = new double[capacity];
+        this.cumulativeScores = new double[capacity];
+    }
+
+    /**
+     * @return number of prisoner ids the board has room for
+     */
+    public int getCapacity() {
+        return scores.length;
+    }
+
+    /**
+     * @return the opponent memory of the simulation, null if none of its prisoners uses it
+     */
+    public OpponentMemory getOpponentMemory() {
+        return opponentMemory;
+    }
+
+    /**
+     * @param opponentMemory the opponent memory of the simulation
+     */
+    public void setOpponentMemory(OpponentMemory opponentMemory) {
+        this.opponentMemory = opponentMemory;
+    }
+
+    /**
+     * Adds a payoff to the score of the current game and the cumulative score.
+     * @param id the prisoner id
+     * @param result the payoff
+     */
+    public void add(int id, double result) {
+        scores[id] += result;
+        cumulativeScores[id] += result;
+    }
+
+    /**
+     * @param id the prisoner id
+     * @return the score of the prisoner in its current game
+     */
+    public double getScore(int id) {
+        return scores[id];
+    }
+
+    /**
+     * @param id the prisoner id
+     * @return the score of the prisoner over all games of the current generation
+     */
+    public double getCumulativeScore(int id) {
+        return cumulativeScores[id];
+    }
+
+    /**
+     * Sets both scores of a prisoner, as when an id is given to a new prisoner.
+     * @param id the prisoner id
+     * @param score the score in the current game
+     * @param cumulativeScore the score over all games of the current generation
+     */
+    public void set(int id, double score, double cumulativeScore) {
+        scores[id] = score;
+        cumulativeScores[id] = cumulativeScore;
+    }
+
+    /**
+     * @param id the prisoner id
+     */
+    public void resetScore(int id) {
+        scores[id] = 0;
+    }
+
+    /**
+     * @param id the prisoner id
+     */
+    public void resetCumulativeScore(int id) {
+        cumulativeScores[id] = 0;
+    }
+
+    /**
+     * Resets the cumulative scores of all prisoners at the end of a generation.
+     */
+    public void resetCumulativeScores() {
+        Arrays.fill(cumulativeScores, 0);
+    }
+}
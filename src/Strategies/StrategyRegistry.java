@@ -0,0 +1,178 @@
+package Strategies;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Registry that resolves each prisoner strategy class once into a factory for new prisoners of that strategy.
+ * The factories are generated with the LambdaMetafactory, so creating a prisoner afterwards is a plain constructor
+ * call instead of a reflective one. Strategies without a default constructor are rejected when they are registered.
+ * <p>
+ * Every strategy class also gets a dense id, counting up from 0 in the order the classes are first seen, so that
+ * statistics per strategy can be kept in arrays. The ids are only valid within the running JVM.
+ */
+public final class StrategyRegistry {
+
+    /** Package the strategy classes are looked up in by name */
+    private static final String STRATEGY_PACKAGE = "Strategies.";
+    /** The factories of all strategies registered so far */
+    private static final ConcurrentHashMap<Class<? extends Prisoner>, Supplier<Prisoner>> factories =
+            new ConcurrentHashMap<>();
+    /** The id of each strategy class, computed once per class */
+    private static final ClassValue<Integer> ids = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> strategy) {
+            return assignId(strategy);
+        }
+    };
+    /** The ids handed out so far, guarded by the class lock */
+    private static final HashMap<Class<?>, Integer> assignedIds = new HashMap<>();
+    /** The strategy class of each id, guarded by the class lock */
+    private static final List<Class<?>> classesById = new ArrayList<>();
+
+    private StrategyRegistry() {}
+
+    /**
+     * Finds a strategy by its class name and registers it.
+     * @param className simple name of the strategy class within the Strategies package
+     * @return factory creating new prisoners of the strategy
+     * @throws ClassNotFoundException could not find the strategy class based on the string given
+     * @throws NoSuchMethodException the strategy has no accessible default constructor
+     * @throws IllegalAccessException the default constructor of the strategy cannot be accessed
+     */
+    public static Supplier<Prisoner> forName(String className)
+            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException {
+        return register(classForName(className));
+    }
+
+    /**
+     * Finds a strategy class by its class name.
+     * @param className simple name of the strategy class within the Strategies package
+     * @return the strategy class
+     * @throws ClassNotFoundException could not find the strategy class based on the string given
+     */
+    public static Class<? extends Prisoner> classForName(String className) throws ClassNotFoundException {
+        Class<?> strategy = Class.forName(STRATEGY_PACKAGE + className.trim());
+        return strategy.asSubclass(Prisoner.class);
+    }
+
+    /**
+     * Gets the dense id of a strategy, assigning the next free id the first time a class is seen.
+     * @param strategy the strategy class
+     * @return the id of the strategy, from 0 up to getNumIds() - 1
+     */
+    public static int getId(Class<? extends Prisoner> strategy) {
+        return ids.get(strategy);
+    }
+
+    /**
+     * Gets the strategy class of an id.
+     * @param id an id returned by getId()
+     * @return the strategy class
+     */
+    public static synchronized Class<?> getStrategy(int id) {
+        return classesById.get(id);
+    }
+
+    /**
+     * @return number of ids handed out so far, every id is smaller than this
+     */
+    public static synchronized int getNumIds() {
+        return classesById.size();
+    }
+
+    /**
+     * Hands out the next id, unless the class already has one (a ClassValue may compute a value more than once).
+     */
+    private static synchronized int assignId(Class<?> strategy) {
+        Integer id = assignedIds.get(strategy);
+        if (id == null) {
+            id = classesById.size();
+            assignedIds.put(strategy, id);
+            classesById.add(strategy);
+        }
+        return id;
+    }
+
+    /**
+     * Registers a strategy, generating its factory if this is the first time it is registered.
+     * @param strategy the strategy class
+     * @return factory creating new prisoners of the strategy
+     * @throws NoSuchMethodException the strategy has no accessible default constructor
+     * @throws IllegalAccessException the default constructor of the strategy cannot be accessed
+     */
+    public static Supplier<Prisoner> register(Class<? extends Prisoner> strategy)
+            throws NoSuchMethodException, IllegalAccessException {
+        Supplier<Prisoner> factory = factories.get(strategy);
+        if (factory == null) {
+            factory = createFactory(strategy);
+            Supplier<Prisoner> existing = factories.putIfAbsent(strategy, factory);
+            if (existing != null)
+                factory = existing;
+        }
+        return factory;
+    }
+
+    /**
+     * Creates a new prisoner of the given strategy, registering the strategy if needed.
+     * @param strategy the strategy class
+     * @return a new prisoner created through the default constructor
+     * @throws InstantiationException the strategy has no default constructor
+     * @throws IllegalAccessException the default constructor of the strategy cannot be accessed
+     */
+    static Prisoner newInstance(Class<? extends Prisoner> strategy)
+            throws InstantiationException, IllegalAccessException {
+        Supplier<Prisoner> factory = factories.get(strategy);
+        if (factory == null) {
+            try {
+                factory = register(strategy);
+            } catch (NoSuchMethodException e) {
+                InstantiationException failure = new InstantiationException(strategy.getName());
+                failure.initCause(e);
+                throw failure;
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Generates the factory for a strategy, falling back on a cached method handle if no lambda can be spun for it.
+     */
+    @SuppressWarnings("unchecked")
+    private static Supplier<Prisoner> createFactory(Class<? extends Prisoner> strategy)
+            throws NoSuchMethodException, IllegalAccessException {
+        if (Modifier.isAbstract(strategy.getModifiers()))
+            throw new NoSuchMethodException(strategy.getName() + " is abstract and cannot be created");
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle constructor = lookup.findConstructor(strategy, MethodType.methodType(void.class));
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), constructor, MethodType.methodType(strategy));
+            return (Supplier<Prisoner>) site.getTarget().invoke();
+        } catch (LambdaConversionException e) {
+            return () -> {
+                try {
+                    return (Prisoner) constructor.invoke();
+                } catch (RuntimeException | Error failure) {
+                    throw failure;
+                } catch (Throwable failure) {
+                    throw new IllegalStateException("Could not create " + strategy.getName(), failure);
+                }
+            };
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not generate the factory of " + strategy.getName(), e);
+        }
+    }
+}
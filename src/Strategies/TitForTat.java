@@ -5,6 +5,14 @@ package Strategies;
  */
 public class TitForTat extends Prisoner {
 
+    private static final long serialVersionUID = 1L;
+
+    /** State 0 complies and state 1 exploits, the next state is always the opponent's last move */
+    private static final FsmTable TABLE = new FsmTable(
+            new boolean[] {false, true},
+            new int[] {0, 0},
+            new int[] {1, 1});
+
     private boolean prevOppMove = COMPLY;
 
     /**
@@ -34,4 +42,24 @@ public class TitForTat extends Prisoner {
     public void notifyGameOver() {
         prevOppMove = COMPLY;
     }
+
+    /**
+     * Declares that the choices of this prisoner only depend on the current game.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * The transition table playing exactly like this class.
+     *
+     * @return the transition table of the strategy
+     */
+    @Override
+    public FsmTable getFsmTable() {
+        return TABLE;
+    }
 }
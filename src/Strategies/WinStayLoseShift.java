@@ -0,0 +1,14 @@
+package Strategies;
+
+/**
+ * Strategies.Prisoner that keeps its choice after a good outcome (the opponent complied) and switches it after a bad
+ * one (the opponent exploited), also known as Pavlov.
+ */
+public class WinStayLoseShift extends MemoryOnePrisoner {
+
+    private static final long serialVersionUID = 1L;
+
+    public WinStayLoseShift() {
+        super(1, 1, 0, 0, 1);
+    }
+}
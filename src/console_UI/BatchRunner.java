@@ -0,0 +1,140 @@
+package console_UI;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import model.ConvergenceDetector;
+import model.Evolution;
+import model.EvolutionListener;
+import model.PopulationHistoryWriter;
+import model.TextHistoryWriter;
+
+/**
+ * Runs a single simulation without any interaction, stopping at the maximum number of generations or as soon as the
+ * population has converged. The parameters come from an optional properties file followed by key=value arguments,
+ * which override the file. For example:
+ * <pre>
+ * population=AlwaysExploit:500,TitForTat:950
+ * generations=10000
+ * seed=1
+ * exploit_comply=10
+ * comply_exploit=0
+ * comply_comply=7
+ * exploit_exploit=3
+ * weight=random
+ * rounds=1-10
+ * action_noise=0.01
+ * perception_noise=0
+ * window=50
+ * tolerance=0.001
+ * threads=0
+ * output=history.bin
+ * format=binary
+ * </pre>
+ * Only population and generations are required, the other parameters default to those of EvolutionTUI. The history
+ * is printed as text to the console unless an output file is given, in the binary format if asked for. The population
+ * is stable once no strategy's share moved by more than the tolerance within the window, a window of 0 only stops at
+ * fixation. Strategies with a genome of their own, such as LookupTablePrisoner, are counted by class: they never stop
+ * the run by fixation, but their share can look stable while the genomes still evolve, so runs of them are best
+ * limited by the number of generations with a window of 0.
+ * @author AdamVD  avdonle@gmail.com
+ */
+public class BatchRunner {
+
+    /**
+     * Main method to run a batch simulation.
+     * @param args an optional properties file followed by key=value overrides
+     */
+    public static void main(String[] args) throws Exception {
+        Properties spec = new Properties();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator >= 0) {
+                spec.setProperty(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+            } else if (spec.isEmpty()) {
+                try (Reader in = Files.newBufferedReader(Paths.get(arg))) {
+                    spec.load(in);
+                }
+            } else {
+                System.err.println("Usage: BatchRunner [batch.properties] [key=value ...]");
+                System.exit(2);
+            }
+        }
+        if (spec.getProperty("population") == null || spec.getProperty("generations") == null) {
+            System.err.println("Usage: BatchRunner [batch.properties] [key=value ...]");
+            System.err.println("The population and generations parameters are required.");
+            System.exit(2);
+        }
+
+        HashMap<String, Integer> population = SweepRunner.parsePopulation(spec.getProperty("population"));
+        int[] rounds = SweepRunner.parseRounds(spec.getProperty("rounds", "1-10"))[0];
+        Double weight = SweepRunner.parseWeights(spec.getProperty("weight", "random"))[0];
+        String seed = spec.getProperty("seed");
+        Evolution evo = new Evolution(population, rounds[1], rounds[0], seed != null ? Integer.valueOf(seed) : null,
+                weight, Double.parseDouble(spec.getProperty("exploit_comply", "10")),
+                Double.parseDouble(spec.getProperty("comply_exploit", "0")),
+                Double.parseDouble(spec.getProperty("comply_comply", "7")),
+                Double.parseDouble(spec.getProperty("exploit_exploit", "3")));
+        evo.setNoise(Double.parseDouble(spec.getProperty("action_noise", "0")),
+                Double.parseDouble(spec.getProperty("perception_noise", "0")));
+        evo.setParallelism(Integer.parseInt(spec.getProperty("threads", "0")));
+
+        int maxGenerations = Integer.parseInt(spec.getProperty("generations"));
+        ConvergenceDetector convergence = new ConvergenceDetector(Integer.parseInt(spec.getProperty("window", "50")),
+                Double.parseDouble(spec.getProperty("tolerance", "0")));
+        evo.addListener(convergence);
+
+        String output = spec.getProperty("output", "-");
+        AutoCloseable history = openHistory(evo, output, spec.getProperty("format", "text"), population);
+        try {
+            while (evo.getGeneration() < maxGenerations && !convergence.isConverged())
+                evo.doGeneration();
+        } finally {
+            evo.setParallelism(0);
+            history.close();
+        }
+
+        System.err.println("Stopped after " + evo.getGeneration() + " generations: "
+                + (convergence.isConverged() ? convergence.getReason() : "generation limit reached") + ".");
+        System.err.println("The final population is: " + evo.getPopulation());
+    }
+
+    /**
+     * Adds the listener writing the history of the simulation to the output.
+     * @return closes the output
+     */
+    private static AutoCloseable openHistory(Evolution evo, String output, String format,
+                                             HashMap<String, Integer> population) throws IOException {
+        EvolutionListener history;
+        AutoCloseable closer;
+        if (format.equalsIgnoreCase("binary")) {
+            if (output.equals("-"))
+                throw new IllegalArgumentException("The binary format needs an output file");
+            PopulationHistoryWriter writer = new PopulationHistoryWriter(Paths.get(output),
+                    new TreeSet<>(population.keySet()));
+            history = writer;
+            closer = writer;
+        } else if (format.equalsIgnoreCase("text")) {
+            OutputStream file = output.equals("-") ? null : Files.newOutputStream(Paths.get(output));
+            PrintStream out = file != null ? new PrintStream(file, false, "UTF-8") : System.out;
+            history = new TextHistoryWriter(out);
+            closer = () -> {
+                if (file != null)
+                    out.close();
+                else
+                    out.flush();
+            };
+        } else {
+            throw new IllegalArgumentException("The format must be text or binary, not " + format);
+        }
+        evo.addListener(history);
+        return closer;
+    }
+}
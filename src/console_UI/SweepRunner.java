@@ -0,0 +1,122 @@
+package console_UI;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Properties;
+import model.ParameterSweep;
+
+/**
+ * Runs a parameter sweep described by a properties file from the console. Lists are comma separated, for example:
+ * <pre>
+ * population=AlwaysExploit:500,TitForTat:950
+ * generations=100
+ * seed=1
+ * exploit_comply=10,12
+ * comply_exploit=0
+ * comply_comply=7
+ * exploit_exploit=3
+ * weight=0.9,0.95,random
+ * rounds=1-10,5-6
+ * warmup=20
+ * threads=8
+ * output=sweep.tsv
+ * </pre>
+ * Only population and generations are required, the payoffs, weight and rounds default to those of EvolutionTUI.
+ * @author AdamVD  avdonle@gmail.com
+ */
+public class SweepRunner {
+
+    /**
+     * Main method to run a parameter sweep.
+     * @param args the path of the sweep properties file
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: SweepRunner <sweep.properties>");
+            System.exit(2);
+        }
+
+        Properties spec = new Properties();
+        try (Reader in = Files.newBufferedReader(Paths.get(args[0]))) {
+            spec.load(in);
+        }
+
+        ParameterSweep sweep = new ParameterSweep(parsePopulation(required(spec, "population")),
+                Integer.parseInt(required(spec, "generations")), Long.parseLong(spec.getProperty("seed", "0")));
+        sweep.setExploitComply(parseDoubles(spec.getProperty("exploit_comply", "10")));
+        sweep.setComplyExploit(parseDoubles(spec.getProperty("comply_exploit", "0")));
+        sweep.setComplyComply(parseDoubles(spec.getProperty("comply_comply", "7")));
+        sweep.setExploitExploit(parseDoubles(spec.getProperty("exploit_exploit", "3")));
+        sweep.setWeights(parseWeights(spec.getProperty("weight", "random")));
+        sweep.setRounds(parseRounds(spec.getProperty("rounds", "1-10")));
+        sweep.setWarmupGenerations(Integer.parseInt(spec.getProperty("warmup", "0")));
+
+        int threads = Integer.parseInt(spec.getProperty("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        String output = spec.getProperty("output", "sweep.tsv");
+
+        System.out.println("Running " + sweep.size() + " simulations on " + threads + " threads into " + output);
+        long start = System.currentTimeMillis();
+        sweep.run(Paths.get(output), threads);
+        System.out.println("Sweep finished in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private static String required(Properties spec, String key) throws IOException {
+        String value = spec.getProperty(key);
+        if (value == null)
+            throw new IOException("The sweep file is missing the " + key + " property");
+        return value;
+    }
+
+    /**
+     * Parses "Strategy:count,Strategy:count" into a population mapping.
+     */
+    static HashMap<String, Integer> parsePopulation(String value) {
+        HashMap<String, Integer> population = new HashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Population entries must look like Strategy:count, not " + entry);
+            population.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return population;
+    }
+
+    private static double[] parseDoubles(String value) {
+        String[] parts = value.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            values[i] = Double.parseDouble(parts[i].trim());
+        return values;
+    }
+
+    static Double[] parseWeights(String value) {
+        String[] parts = value.split(",");
+        Double[] values = new Double[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            values[i] = parts[i].trim().equalsIgnoreCase("random") ? null : Double.valueOf(parts[i].trim());
+        return values;
+    }
+
+    /**
+     * Parses "min-max,min-max" into round ranges. The maximum is exclusive, so it must be above the minimum: 5-6 for
+     * games of exactly 5 rounds.
+     */
+    static int[][] parseRounds(String value) {
+        String[] parts = value.split(",");
+        int[][] values = new int[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            String[] range = parts[i].split("-");
+            if (range.length != 2)
+                throw new IllegalArgumentException("Rounds must look like min-max, not " + parts[i]);
+            values[i] = new int[] {Integer.parseInt(range[0].trim()), Integer.parseInt(range[1].trim())};
+            if (values[i][1] <= values[i][0])
+                throw new IllegalArgumentException("The maximum of the rounds must be above the minimum, not "
+                        + parts[i].trim());
+        }
+        return values;
+    }
+}
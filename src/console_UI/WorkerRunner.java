@@ -0,0 +1,27 @@
+package console_UI;
+
+import model.TournamentWorker;
+
+/**
+ * Starts a sharded tournament worker from the console. The worker listens on the loopback interface until the process
+ * is stopped; a simulation uses it through Evolution.setWorkers().
+ * @author AdamVD  avdonle@gmail.com
+ */
+public class WorkerRunner {
+
+    /**
+     * Main method to run a tournament worker.
+     * @param args the port to listen on
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: WorkerRunner <port>");
+            System.exit(2);
+        }
+
+        try (TournamentWorker worker = new TournamentWorker(Integer.parseInt(args[0]))) {
+            System.out.println("Tournament worker listening on port " + worker.getPort() + ".");
+            worker.serve();
+        }
+    }
+}
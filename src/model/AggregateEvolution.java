@@ -0,0 +1,147 @@
+package model;
+
+import Strategies.Prisoner;
+import Strategies.StrategyRegistry;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Class to simulate evolution of strategies with the population stored as the number of prisoners of each strategy.
+ * Instead of playing every pair of prisoners, every pair of strategies is played once per generation to build a
+ * payoff matrix, and the fitness of each strategy follows from the matrix and the counts. Memory and time per
+ * generation therefore depend on the number of strategies rather than the number of prisoners.
+ * Selection keeps the same truncation semantics as Evolution.doGeneration(): the better half of the prisoners
+ * survives and the best prisoners each produce one offspring of their own strategy. An offspring is only a count, so
+ * strategies with a genome of their own (Prisoner.hasGenome()), which would never mutate here, are rejected.
+ */
+public class AggregateEvolution {
+
+    /** The number of prisoners of each strategy, this is the whole population */
+    private HashMap<String, Integer> prisonerPopulations = new HashMap<>();
+    /** Total number of prisoners in this simulation */
+    private final int numPrisoners;
+    /** The strategy class names, in the order used by the payoff matrix */
+    private final String[] strategyNames;
+    /** The factories of the strategies, in the order used by the payoff matrix */
+    private final List<Supplier<Prisoner>> strategies = new ArrayList<>();
+    /** Supplies the payoffs, rounds and weight of the games (holds no prisoners itself) */
+    private final Evolution rules;
+    /** The random number generator for this object */
+    private final Random r;
+    /** The current generation */
+    private int generation = 0;
+
+    /**
+     * Create an aggregate evolutionary simulator.
+     * @param prisonerInitialization mapping of prisoner strategy class names to the number of that strategy to be created
+     * @param maxRounds maximum number of rounds to occur in each "game" between two prisoners
+     * @param minRounds minimum number of rounds to occur in each "game" between two prisoners, for a constant number of
+     *                  rounds: maxRounds = minRounds + 1
+     * @param randSeed seed for the random number generator, null if no seed
+     * @param weight weight to be used in calculating the payoff to players each round, null if should be random
+     * @param exploit_comply base payoff to the exploiter if the other prisoner complies
+     * @param comply_exploit base payoff to the player that complied if the other prisoner exploits
+     * @param comply_comply base payoff if both prisoners comply
+     * @param exploit_exploit base payoff if both prisoners exploit
+     * @throws ClassNotFoundException could not find a strategy class based on the string given
+     * @throws NoSuchMethodException could not acquire the constructor (no default constructor given)
+     * @throws IllegalAccessException the default constructor of a strategy cannot be accessed
+     */
+    public AggregateEvolution(HashMap<String, Integer> prisonerInitialization, int maxRounds, int minRounds,
+                              Integer randSeed, Double weight, double exploit_comply,
+                              double comply_exploit, double comply_comply, double exploit_exploit)
+            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException {
+
+        this.r = randSeed != null ? new Random(randSeed) : new Random();
+        this.rules = new Evolution(new HashMap<>(), maxRounds, minRounds, randSeed, weight,
+                exploit_comply, comply_exploit, comply_comply, exploit_exploit);
+
+        // sorted so that strategies with equal fitness are always ranked the same way, zeroed entries are ignored
+        TreeMap<String, Integer> sorted = new TreeMap<>();
+        for (HashMap.Entry<String, Integer> entry : prisonerInitialization.entrySet()) {
+            if (entry.getValue() > 0)
+                sorted.put(entry.getKey(), entry.getValue());
+        }
+        this.strategyNames = sorted.keySet().toArray(new String[0]);
+
+        int cumulativePrisoners = 0;
+        for (int i = 0; i < strategyNames.length; i++) {
+            strategies.add(StrategyRegistry.forName(strategyNames[i]));
+            if (strategies.get(i).get().hasGenome())
+                throw new IllegalArgumentException(strategyNames[i] + " has a genome of its own, which cannot evolve "
+                        + "as a count");
+
+            int numToAdd = sorted.get(strategyNames[i]);
+            prisonerPopulations.put(strategyNames[i], numToAdd);
+            cumulativePrisoners += numToAdd;
+        }
+        this.numPrisoners = cumulativePrisoners;
+    }
+
+    /**
+     * Runs simulation of a single generation.
+     */
+    public void doGeneration() {
+        int numStrategies = strategyNames.length;
+        int[] counts = new int[numStrategies];
+        for (int i = 0; i < numStrategies; i++)
+            counts[i] = prisonerPopulations.get(strategyNames[i]);
+
+        // only strategies that are still alive have to play
+        List<Supplier<Prisoner>> alive = new ArrayList<>(strategies);
+        for (int i = 0; i < numStrategies; i++) {
+            if (counts[i] == 0)
+                alive.set(i, null);
+        }
+        double[][] payoffs = PayoffMatrix.build(alive, rules, r);
+
+        // score of a single prisoner of each strategy after playing everyone but itself
+        double[] fitness = new double[numStrategies];
+        for (int a = 0; a < numStrategies; a++) {
+            if (counts[a] == 0)
+                continue;
+            for (int b = 0; b < numStrategies; b++)
+                fitness[a] += counts[b] * payoffs[a][b];
+            fitness[a] -= payoffs[a][a];
+        }
+
+        // rank the strategies by fitness in descending order
+        Integer[] ranking = new Integer[numStrategies];
+        for (int i = 0; i < numStrategies; i++)
+            ranking[i] = i;
+        Arrays.sort(ranking, (s1, s2) -> Double.compare(fitness[s2], fitness[s1]));
+
+        // the better half survives and the best of them reproduce once each
+        int[] nextCounts = new int[numStrategies];
+        int survivors = numPrisoners - numPrisoners / 2;
+        int offspring = numPrisoners / 2;
+        for (int strategy : ranking) {
+            int survived = Math.min(counts[strategy], survivors);
+            int reproduced = Math.min(counts[strategy], offspring);
+            survivors -= survived;
+            offspring -= reproduced;
+            nextCounts[strategy] = survived + reproduced;
+        }
+
+        for (int i = 0; i < numStrategies; i++)
+            prisonerPopulations.replace(strategyNames[i], nextCounts[i]);
+
+        generation++;
+    }
+
+    /**
+     * Getter for prisoner population sizes.
+     */
+    public Map<String, Integer> getPopulation() {
+        return prisonerPopulations;
+    }
+
+    /**
+     * Getter for the current generation.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+}
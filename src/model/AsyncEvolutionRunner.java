@@ -0,0 +1,142 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the generations of a simulation on a thread of its own until it is stopped, so a user interface stays
+ * responsive. The metrics of the latest generation are published through an atomic reference: the metrics are
+ * immutable, so observers such as dashboards may poll getSnapshot() from any thread at any rate without locking the
+ * simulation or slowing it down. The simulation itself (getPopulation(), getPrisoners()) must not be touched while
+ * the runner is running, only after stop() returned.
+ * <p>
+ * Pausing and stopping take effect between generations, a generation that is running is always completed.
+ */
+public class AsyncEvolutionRunner implements EvolutionListener {
+
+    /** The simulation being run */
+    private final Evolution evo;
+    /** Metrics of the latest completed generation, null before the first */
+    private final AtomicReference<GenerationMetrics> snapshot = new AtomicReference<>();
+    /** Lock the runner thread waits on while paused */
+    private final Object pauseLock = new Object();
+    /** Whether the runner should wait before the next generation */
+    private volatile boolean paused = false;
+    /** Whether the runner should end before the next generation */
+    private volatile boolean stopped = false;
+    /** The exception that ended the runner, null if none */
+    private volatile Exception failure;
+    /** The thread running the generations, null until started */
+    private Thread thread;
+
+    /**
+     * Create a runner for a simulation, which starts running once start() is called.
+     * @param evo the simulation to run
+     */
+    public AsyncEvolutionRunner(Evolution evo) {
+        this.evo = evo;
+    }
+
+    /**
+     * Starts running generations on a new thread.
+     * @throws IllegalStateException thrown when the runner has already been started
+     */
+    public synchronized void start() {
+        if (thread != null)
+            throw new IllegalStateException("The runner has already been started");
+        evo.addListener(this);
+        thread = new Thread(this::run, "evolution-runner");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Pauses the runner after the generation that is running.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Lets a paused runner continue.
+     */
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Ends the runner after the generation that is running, and waits for it to end. A stopped runner cannot be
+     * started again.
+     * @throws InterruptedException thrown when the calling thread is interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        synchronized (pauseLock) {
+            stopped = true;
+            pauseLock.notifyAll();
+        }
+        Thread running;
+        synchronized (this) {
+            running = thread;
+        }
+        if (running != null && running != Thread.currentThread())
+            running.join();
+    }
+
+    /**
+     * @return the metrics of the latest completed generation, null before the first generation completed
+     */
+    public GenerationMetrics getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * @return true while the runner thread is alive, also when paused
+     */
+    public synchronized boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * @return true if the runner was asked to pause and has not been resumed
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return the exception thrown by a generation that ended the runner, null if none
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void generationCompleted(GenerationMetrics metrics) {
+        snapshot.set(metrics);
+    }
+
+    /**
+     * Runs generations until stopped, waiting between generations while paused.
+     */
+    private void run() {
+        try {
+            while (true) {
+                synchronized (pauseLock) {
+                    while (paused && !stopped)
+                        pauseLock.wait();
+                }
+                if (stopped)
+                    return;
+                evo.doGeneration();
+            }
+        } catch (InterruptedException e) {
+            // interrupting the runner thread ends it like stop()
+        } catch (InstantiationException | IllegalAccessException | RuntimeException e) {
+            failure = e;
+        } finally {
+            evo.removeListener(this);
+        }
+    }
+}
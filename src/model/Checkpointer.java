@@ -0,0 +1,137 @@
+package model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Listener that saves a snapshot of a simulation every few generations, so a long run can be resumed with restore()
+ * after a crash. The snapshot is copied into memory on the simulation thread, then compressed and written to disk on
+ * a background thread so the simulation can continue right away. The file is replaced atomically, so it always holds
+ * a complete snapshot.
+ */
+public class Checkpointer implements EvolutionListener, Closeable {
+
+    /** The simulation being saved */
+    private final Evolution evo;
+    /** The file the snapshots are written to */
+    private final Path file;
+    /** Number of generations between snapshots */
+    private final int interval;
+    /** The thread writing the snapshots to disk */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** The last failure of the background thread, reported by the next checkpoint */
+    private volatile IOException failure;
+
+    /**
+     * Create a checkpointer and start listening to the simulation.
+     * @param evo the simulation to save
+     * @param file the file to write the snapshots to
+     * @param interval number of generations between snapshots
+     */
+    public Checkpointer(Evolution evo, Path file, int interval) {
+        if (interval < 1)
+            throw new IllegalArgumentException("The checkpoint interval must be positive: " + interval);
+        this.evo = evo;
+        this.file = file;
+        this.interval = interval;
+        evo.addListener(this);
+    }
+
+    @Override
+    public void generationCompleted(GenerationMetrics metrics) {
+        if (metrics.getGeneration() % interval == 0) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the simulation now and writes it in the background. Must be called on the simulation
+     * thread, between generations.
+     * @return completes once the snapshot is on disk
+     * @throws IOException thrown when the snapshot cannot be taken, or when writing the previous snapshot failed
+     */
+    public Future<?> checkpoint() throws IOException {
+        IOException previous = failure;
+        if (previous != null)
+            throw previous;
+
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(snapshot)) {
+            evo.writeSnapshot(out);
+        }
+        byte[] state = snapshot.toByteArray();
+
+        return writer.submit(() -> {
+            try {
+                write(state);
+            } catch (IOException e) {
+                failure = e;
+            }
+        });
+    }
+
+    /**
+     * Compresses a snapshot into a temporary file and moves it over the checkpoint file.
+     */
+    private void write(byte[] state) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.write(state);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Stops listening to the simulation and waits for the last snapshot to be written.
+     * @throws IOException thrown when writing a snapshot failed
+     */
+    @Override
+    public void close() throws IOException {
+        evo.removeListener(this);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the last checkpoint");
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Restores a simulation from a checkpoint file. The restored simulation continues exactly where the saved one
+     * was, but listeners (including checkpointers) have to be added again.
+     * @param file the checkpoint file
+     * @return the restored simulation
+     * @throws IOException thrown when the file cannot be read
+     * @throws ClassNotFoundException thrown when a class of the snapshot (such as a strategy) cannot be found
+     */
+    public static Evolution restore(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+            return Evolution.readSnapshot(in);
+        }
+    }
+}
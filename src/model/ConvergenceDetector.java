@@ -0,0 +1,121 @@
+package model;
+
+import Strategies.StrategyRegistry;
+
+import java.util.*;
+
+/**
+ * Listener that decides when a simulation has nothing left to show: either a single strategy remains (fixation), or
+ * the share of every strategy in the population has stayed within a tolerance over a window of generations.
+ * The population only names the class of each prisoner, so a strategy with a genome of its own
+ * (Prisoner.hasGenome()) never counts as fixed, as its genomes may still be evolving. The shares are still those of
+ * the classes, so a window only makes sense once the genomes no longer matter.
+ */
+public class ConvergenceDetector implements EvolutionListener {
+
+    /** Number of generations the population has to stay stable */
+    private final int window;
+    /** Largest change in the share of a strategy that still counts as stable */
+    private final double tolerance;
+    /** The shares of each strategy over the last window + 1 generations, oldest first */
+    private final ArrayDeque<Map<String, Double>> recent = new ArrayDeque<>();
+    /** Why the simulation converged, null while it has not */
+    private String reason;
+    /** Whether each strategy seen so far has a genome of its own, by simple class name */
+    private final Map<String, Boolean> hasGenome = new HashMap<>();
+
+    /**
+     * Create a convergence detector.
+     * @param window number of generations the population has to stay stable, 0 to only detect fixation
+     * @param tolerance largest change in the share (between 0 and 1) of any strategy within the window that still
+     *                  counts as stable
+     */
+    public ConvergenceDetector(int window, double tolerance) {
+        if (window < 0)
+            throw new IllegalArgumentException("The window cannot be negative: " + window);
+        this.window = window;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public void generationCompleted(GenerationMetrics metrics) {
+        Map<String, Double> shares = new HashMap<>();
+        int total = 0;
+        String survivor = null;
+        int survivors = 0;
+        for (Map.Entry<String, Integer> entry : metrics.getPopulation().entrySet()) {
+            total += entry.getValue();
+            if (entry.getValue() > 0) {
+                survivor = entry.getKey();
+                survivors++;
+            }
+        }
+        for (Map.Entry<String, Integer> entry : metrics.getPopulation().entrySet())
+            shares.put(entry.getKey(), total > 0 ? (double) entry.getValue() / total : 0);
+
+        if (survivors == 1 && !hasGenome(survivor)) {
+            reason = "fixation of " + survivor + " in generation " + metrics.getGeneration();
+            return;
+        }
+        if (window == 0)
+            return;
+
+        recent.addLast(shares);
+        if (recent.size() > window + 1)
+            recent.removeFirst();
+        if (recent.size() == window + 1 && isStable()) {
+            reason = "population stable within " + tolerance + " for " + window + " generations in generation "
+                    + metrics.getGeneration();
+        }
+    }
+
+    /**
+     * @param strategy simple class name of a strategy
+     * @return true if the strategy has a genome of its own, false if it is not a strategy of the Strategies package
+     */
+    private boolean hasGenome(String strategy) {
+        return hasGenome.computeIfAbsent(strategy, name -> {
+            try {
+                return StrategyRegistry.forName(name).get().hasGenome();
+            } catch (ReflectiveOperationException e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @return true if no share moved by more than the tolerance within the window
+     */
+    private boolean isStable() {
+        Set<String> strategies = new HashSet<>();
+        for (Map<String, Double> shares : recent)
+            strategies.addAll(shares.keySet());
+
+        for (String strategy : strategies) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (Map<String, Double> shares : recent) {
+                double share = shares.getOrDefault(strategy, 0.);
+                min = Math.min(min, share);
+                max = Math.max(max, share);
+            }
+            if (max - min > tolerance)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true once the simulation has converged
+     */
+    public boolean isConverged() {
+        return reason != null;
+    }
+
+    /**
+     * @return why the simulation converged, null while it has not
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -4,7 +4,24 @@ import Strategies.*;
 import junit.framework.TestCase;
 import org.junit.Before;
 
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.assertNotEquals;
 
@@ -89,15 +106,22 @@ public class EvoTests extends TestCase {
      * Attempts prisoner creation directly through the Evolution.addPrisoners() method.
      */
     public void testAddPrisonerByClassNames() throws Exception {
-        assertEquals("Population initially empty", evo.getPopulation(), new HashMap());
+        Map<String, Integer> population = evo.getPopulation();
+        assertEquals("Population initially empty", population, new HashMap());
 
         evo.addPrisoners("AlwaysComply", 5);
         evo.addPrisoners("AlwaysComply", 10);  // this second entry adds on to the first
         evo.addPrisoners("AlwaysExploit", 15);
         assertEquals("Population hash map size", 2, evo.getPopulation().size());
-        assertEquals("AlwaysComply size", 15, evo.getPopulation().get("AlwaysComply"));
-        assertEquals("AlwaysExploit size", 15, evo.getPopulation().get("AlwaysExploit"));
+        assertEquals("AlwaysComply size", Integer.valueOf(15), evo.getPopulation().get("AlwaysComply"));
+        assertEquals("AlwaysExploit size", Integer.valueOf(15), evo.getPopulation().get("AlwaysExploit"));
         assertEquals("Prisoner list size", 30, evo.getPrisoners().size());
+        assertEquals("Population view follows the simulation", evo.getPopulation(), population);
+        try {
+            population.put("AlwaysComply", 0);
+            fail("The population view cannot be changed");
+        } catch (UnsupportedOperationException expected) {
+        }
     }
 
     /**
@@ -113,8 +137,8 @@ public class EvoTests extends TestCase {
                 10, 0, 7, 3);
 
         assertEquals("Population hash map size", 2, evo.getPopulation().size());
-        assertEquals("AlwaysComply size", 10, evo.getPopulation().get("AlwaysComply"));
-        assertEquals("AlwaysExploit size", 15, evo.getPopulation().get("AlwaysExploit"));
+        assertEquals("AlwaysComply size", Integer.valueOf(10), evo.getPopulation().get("AlwaysComply"));
+        assertEquals("AlwaysExploit size", Integer.valueOf(15), evo.getPopulation().get("AlwaysExploit"));
         assertEquals("Prisoner list size", 25, evo.getPrisoners().size());
     }
 
@@ -175,4 +199,1142 @@ public class EvoTests extends TestCase {
         prisoner2 = prisoner1.evolve();
         assertFalse(prisoner2.choose());
     }
+
+    /**
+     * A seeded simulation in the multi-core tournament mode should produce the same populations whatever the number
+     * of threads playing the games.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testParallelTournamentIsDeterministic() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 9);
+        popInit.put("AlwaysExploit", 7);
+        popInit.put("PermanentRetaliation", 4);
+
+        Evolution singleThread = new Evolution(popInit, 10, 1, 3, null, 10, 0, 7, 3);
+        Evolution multiThread = new Evolution(popInit, 10, 1, 3, null, 10, 0, 7, 3);
+        singleThread.setParallelism(1);
+        multiThread.setParallelism(4);
+
+        for (int i = 0; i < 5; i++) {
+            singleThread.doGeneration();
+            multiThread.doGeneration();
+            assertEquals("Population after generation " + i, singleThread.getPopulation(), multiThread.getPopulation());
+        }
+        assertEquals("Prisoner list size", 20, multiThread.getPrisoners().size());
+    }
+
+    /**
+     * Games between deterministic prisoners should be played once and then be served from the payoff cache.
+     */
+    public void testDeterministicPayoffCache() {
+        prisoner1 = new TitForTat();
+        prisoner2 = new AlwaysExploit();
+
+        new InterrogationRoom(4, prisoner1, prisoner2, 1., evo).simulateGame();
+        assertEquals("TitForTat, 4 rounds, weight 1", 9., prisoner1.getCumulativeScore());
+        assertEquals("AlwaysExploit, 4 rounds, weight 1", 19., prisoner2.getCumulativeScore());
+        assertEquals("Cached games", 1, evo.payoffCache.size());
+
+        new InterrogationRoom(4, prisoner1, prisoner2, 1., evo).simulateGame();
+        assertEquals("TitForTat, cached game", 18., prisoner1.getCumulativeScore());
+        assertEquals("AlwaysExploit, cached game", 38., prisoner2.getCumulativeScore());
+        assertEquals("Cached games", 1, evo.payoffCache.size());
+        assertFalse("TitForTat reset after game", prisoner1.choose());
+    }
+
+    /**
+     * With a constant number of rounds and deterministic strategies the aggregate simulator should evolve the same
+     * populations as the simulator that plays every pair of prisoners.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testAggregateEvolutionMatchesEvolution() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 10);
+        popInit.put("AlwaysExploit", 16);
+        popInit.put("AlwaysComply", 14);
+
+        evo = new Evolution(popInit, 6, 5, 1, .9, 10, 0, 7, 3);
+        AggregateEvolution aggregate = new AggregateEvolution(popInit, 6, 5, 1, .9, 10, 0, 7, 3);
+
+        for (int i = 0; i < 4; i++) {
+            evo.doGeneration();
+            aggregate.doGeneration();
+            assertEquals("Population after generation " + i, evo.getPopulation(), aggregate.getPopulation());
+        }
+        assertEquals("Generation counter", 4, aggregate.getGeneration());
+
+        HashMap<String, Integer> genomes = new HashMap<>();
+        genomes.put("LookupTablePrisoner", 10);
+        try {
+            new AggregateEvolution(genomes, 6, 5, 1, .9, 10, 0, 7, 3);
+            fail("Strategy with a genome accepted as a count");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Truncation selection should keep the better half and let the best prisoners reproduce, also for an odd number
+     * of prisoners.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testTruncationSelection() throws Exception {
+        double[] scores = {4, 9, 1, 7, 7, 0, 3};
+        Prisoner[] population = new Prisoner[scores.length];
+        double[] fitness = scores.clone();
+        for (int i = 0; i < population.length; i++) {
+            population[i] = new AlwaysComply();
+            population[i].updateScore(scores[i]);
+        }
+        Prisoner[] next = new Prisoner[population.length];
+
+        new TruncationSelection().select(population, fitness, next, null);
+
+        double survivorScores = 0;
+        for (int i = 0; i < 4; i++)
+            survivorScores += next[i].getCumulativeScore();
+        assertEquals("Survivors are the best four", 27., survivorScores);
+        for (int i = 4; i < next.length; i++) {
+            assertNotNull("Offspring created", next[i]);
+            assertEquals("Offspring start without a score", 0., next[i].getCumulativeScore());
+        }
+    }
+
+    /**
+     * The population size should stay constant with every selection operator, including odd population sizes.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testSelectionOperatorsKeepPopulationSize() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 6);
+        popInit.put("AlwaysExploit", 7);
+        popInit.put("AlwaysComply", 8);
+
+        SelectionOperator[] operators = {new TruncationSelection(), new TournamentSelection(3),
+                new FitnessProportionalSelection()};
+        for (SelectionOperator operator : operators) {
+            evo = new Evolution(popInit, 10, 1, 1, .9, 10, 0, 7, 3);
+            evo.setSelectionOperator(operator);
+            for (int i = 0; i < 3; i++)
+                evo.doGeneration();
+            assertEquals("Prisoner list size", 21, evo.getPrisoners().size());
+        }
+    }
+
+    /**
+     * The strategy registry should resolve a strategy once and report missing default constructors on registration.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testStrategyRegistry() throws Exception {
+        Supplier<Prisoner> factory = StrategyRegistry.forName("TitForTat");
+        assertSame("Factory is resolved once", factory, StrategyRegistry.register(TitForTat.class));
+
+        prisoner1 = factory.get();
+        prisoner2 = factory.get();
+        assertNotEquals("Factory creates new prisoners", prisoner1, prisoner2);
+        assertEquals("Factory creates the strategy", TitForTat.class, prisoner1.getClass());
+
+        try {
+            StrategyRegistry.register(NoDefaultConstructor.class);
+            assertTrue("Should throw NoSuchMethod exception", false);
+        } catch (NoSuchMethodException e) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Listeners and the JMX view should receive the metrics of every generation.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testGenerationMetrics() throws Exception {
+        evo.addPrisoners("TitForTat", 6);
+        evo.addPrisoners("AlwaysExploit", 4);
+        ArrayList<GenerationMetrics> received = new ArrayList<>();
+        evo.addListener(received::add);
+        EvolutionMetrics metrics = EvolutionMetrics.register(evo, "testGenerationMetrics");
+        ObjectName name = new ObjectName("model:type=Evolution,name=\"testGenerationMetrics\"");
+        try {
+            evo.doGeneration();
+            evo.doGeneration();
+
+            assertEquals("Metrics per generation", 2, received.size());
+            GenerationMetrics last = received.get(1);
+            assertEquals("Generation", 2, last.getGeneration());
+            assertEquals("Games played", 45, last.getGamesPlayed());
+            assertEquals("Rounds played", 180, last.getRoundsPlayed());
+            assertEquals("Prisoners created", 5, last.getPrisonersCreated());
+
+            Object roundsPlayed = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RoundsPlayed");
+            assertEquals("Rounds played through JMX", 360L, roundsPlayed);
+            assertEquals("Generation through JMX", 2, metrics.getGeneration());
+        } finally {
+            metrics.unregister();
+        }
+
+        assertFalse("Unregistered", ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        evo.doGeneration();
+        assertEquals("No longer listening", 2, metrics.getGeneration());
+        EvolutionMetrics.register(evo, "testGenerationMetrics").unregister();
+    }
+
+    /**
+     * A population history should read back the generations it was given, across block boundaries.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testPopulationHistory() throws Exception {
+        Path file = Files.createTempFile("population", ".history");
+        int generations = PopulationHistoryWriter.BLOCK_CAPACITY * 2 + 10;
+        try {
+            try (PopulationHistoryWriter writer = new PopulationHistoryWriter(file,
+                    Arrays.asList("TitForTat", "AlwaysExploit"))) {
+                for (int i = 1; i <= generations; i++) {
+                    HashMap<String, Integer> population = new HashMap<>();
+                    population.put("TitForTat", i);
+                    population.put("AlwaysExploit", 2 * i);
+                    writer.generationCompleted(new GenerationMetrics(i, 0, 0, 0, 0, 0, 0, i / 2., i, population));
+                }
+            }
+
+            try (PopulationHistoryReader reader = new PopulationHistoryReader(file)) {
+                assertEquals("History size", generations, reader.size());
+                assertEquals("Strategies are sorted", "AlwaysExploit", reader.getStrategies()[0]);
+
+                PopulationHistoryReader.Slice slice = reader.read(PopulationHistoryWriter.BLOCK_CAPACITY - 5, 10);
+                assertEquals("Slice size", 10, slice.size());
+                for (int i = 0; i < slice.size(); i++) {
+                    int generation = PopulationHistoryWriter.BLOCK_CAPACITY - 4 + i;
+                    assertEquals("Generation", generation, slice.generations[i]);
+                    assertEquals("AlwaysExploit count", 2 * generation, slice.counts[0][i]);
+                    assertEquals("TitForTat count", generation, slice.counts[1][i]);
+                    assertEquals("Mean score", generation / 2., slice.meanScores[i]);
+                    assertEquals("Max score", (double) generation, slice.maxScores[i]);
+                }
+
+                long[] streamed = new long[1];
+                reader.forEach(part -> streamed[0] += part.size());
+                assertEquals("Streamed generations", generations, streamed[0]);
+                assertEquals("Slice past the end", 0, reader.read(generations, 5).size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A simulation restored from a checkpoint should continue exactly like the simulation that was saved.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testCheckpointAndRestore() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 8);
+        popInit.put("AlwaysExploit", 8);
+        popInit.put("PermanentRetaliation", 8);
+        popInit.put("MultipleConstructor", 6);
+        evo = new Evolution(popInit, 10, 1, 7, null, 10, 0, 7, 3);
+        evo.setSelectionOperator(new TournamentSelection(2));
+
+        Path file = Files.createTempFile("evolution", ".checkpoint");
+        try {
+            try (Checkpointer checkpointer = new Checkpointer(evo, file, 3)) {
+                for (int i = 0; i < 3; i++)
+                    evo.doGeneration();
+                checkpointer.checkpoint().get();
+            }
+            Evolution restored = Checkpointer.restore(file);
+
+            for (int i = 0; i < 4; i++) {
+                evo.doGeneration();
+                restored.doGeneration();
+                assertEquals("Population after generation " + i, evo.getPopulation(), restored.getPopulation());
+                for (int p = 0; p < evo.getPrisoners().size(); p++) {
+                    Prisoner original = (Prisoner) evo.getPrisoners().get(p);
+                    Prisoner copy = (Prisoner) restored.getPrisoners().get(p);
+                    assertEquals("Prisoner " + p, original.getClass(), copy.getClass());
+                    assertEquals("Prisoner " + p + " choice", original.choose(), copy.choose());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A parameter sweep should write one line per grid point, with the same results for the same seed.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testParameterSweep() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 10);
+        popInit.put("AlwaysExploit", 10);
+
+        ParameterSweep sweep = new ParameterSweep(popInit, 3, 42);
+        sweep.setExploitComply(10, 12);
+        sweep.setWeights(.9, null);
+        sweep.setRounds(new int[] {1, 10}, new int[] {5, 6});
+        assertEquals("Sweep size", 8, sweep.size());
+
+        Path first = Files.createTempFile("sweep", ".tsv");
+        Path second = Files.createTempFile("sweep", ".tsv");
+        try {
+            sweep.run(first, 4);
+            sweep.run(second, 1);
+            List<String> firstLines = Files.readAllLines(first);
+            List<String> secondLines = Files.readAllLines(second);
+            assertEquals("Header and one line per run", 9, firstLines.size());
+
+            // runs finish in any order and take different times, so compare everything but the timing by run
+            Map<String, String> firstRuns = new HashMap<>();
+            Map<String, String> secondRuns = new HashMap<>();
+            for (int i = 1; i < firstLines.size(); i++) {
+                firstRuns.put(firstLines.get(i).split("\t")[0], firstLines.get(i).replaceAll("\t\\d+\t(\\d+\t\\d+)$", "\t$1"));
+                secondRuns.put(secondLines.get(i).split("\t")[0], secondLines.get(i).replaceAll("\t\\d+\t(\\d+\t\\d+)$", "\t$1"));
+            }
+            assertEquals("Same results with the same seed", firstRuns, secondRuns);
+        } finally {
+            Files.delete(first);
+            Files.delete(second);
+        }
+    }
+
+    /**
+     * Games between finite state machine prisoners should score the same on the transition tables as when the
+     * prisoners are called every round, and invalid tables should be rejected.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testFsmKernel() throws Exception {
+        List<Supplier<Prisoner>> strategies = Arrays.asList(AlwaysComply::new, AlwaysExploit::new, TitForTat::new,
+                PermanentRetaliation::new);
+
+        for (Supplier<Prisoner> first : strategies) {
+            for (Supplier<Prisoner> second : strategies) {
+                for (int numTurns = 1; numTurns <= 6; numTurns++) {
+                    Prisoner fsm1 = first.get();
+                    Prisoner fsm2 = second.get();
+                    double[] payoff = evo.fsmKernel.play(fsm1.getFsmTable(), fsm2.getFsmTable(), numTurns, .75, null);
+
+                    // reference game calling the prisoners every round
+                    double score1 = 0;
+                    double score2 = 0;
+                    for (int round = 1; round <= numTurns; round++) {
+                        boolean choice1 = fsm1.choose();
+                        boolean choice2 = fsm2.choose();
+                        double discount = Math.pow(.75, round - 1);
+                        score1 += basePayoff(choice1, choice2) * discount;
+                        score2 += basePayoff(choice2, choice1) * discount;
+                        fsm1.notifyOpponentChoice(choice2);
+                        fsm2.notifyOpponentChoice(choice1);
+                    }
+                    String game = fsm1.getClass().getSimpleName() + " vs " + fsm2.getClass().getSimpleName() + ", "
+                            + numTurns + " rounds";
+                    // games that end in a cycle are added up in closed form
+                    assertEquals(game, score1, payoff[0], 1e-9);
+                    assertEquals(game, score2, payoff[1], 1e-9);
+                }
+            }
+        }
+
+        // a subclass overriding the moves of a built-in is called every round instead of playing the inherited table
+        @SuppressWarnings("serial")
+        Prisoner exploitingTitForTat = new TitForTat() {
+            @Override
+            public boolean choose() {
+                return true;
+            }
+        };
+        Prisoner complier = new AlwaysComply();
+        new InterrogationRoom(4, exploitingTitForTat, complier, 1, evo).simulateGame();
+        assertEquals("Overridden moves", 4 * basePayoff(true, false), exploitingTitForTat.getCumulativeScore());
+        assertEquals("Opponent of overridden moves", 4 * basePayoff(false, true), complier.getCumulativeScore());
+
+        try {
+            new FsmTable(new boolean[] {false, true}, new int[] {0, 2}, new int[] {1, 1});
+            fail("Transition to a missing state accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Long games should be fast-forwarded through their cycles to the same scores as playing every round, including
+     * games that end part way through a cycle.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testCycleFastForward() throws Exception {
+        // alternates between exploiting and complying whatever the opponent does, so games against TitForTat cycle
+        // through two pairs of states
+        FsmTable alternating = new FsmTable(new boolean[] {true, false}, new int[] {1, 0}, new int[] {1, 0});
+        FsmTable titForTat = new TitForTat().getFsmTable();
+
+        Evolution longGames = new Evolution(new HashMap<>(), 3001, 1, 1, .999, 10, 0, 7, 3);
+        for (int numTurns : new int[] {1, 2, 3, 999, 1000, 3000}) {
+            double[] payoff = longGames.fsmKernel.play(alternating, titForTat, numTurns, .999, longGames.discounts);
+
+            double score1 = 0;
+            double score2 = 0;
+            int state1 = 0;
+            int state2 = 0;
+            for (int round = 0; round < numTurns; round++) {
+                int move1 = alternating.move(state1);
+                int move2 = titForTat.move(state2);
+                double discount = Math.pow(.999, round);
+                score1 += basePayoff(move1 == FsmTable.EXPLOIT, move2 == FsmTable.EXPLOIT) * discount;
+                score2 += basePayoff(move2 == FsmTable.EXPLOIT, move1 == FsmTable.EXPLOIT) * discount;
+                state1 = alternating.next(state1, move2);
+                state2 = titForTat.next(state2, move1);
+            }
+            assertEquals("Alternating, " + numTurns + " rounds", score1, payoff[0], 1e-9 * score1);
+            assertEquals("TitForTat, " + numTurns + " rounds", score2, payoff[1], 1e-9 * score2);
+        }
+
+        // the discount table matches the weights computed during a game
+        assertEquals("Discount of round 1", 1., longGames.discounts[0]);
+        assertEquals("Discount of round 3000", Math.pow(.999, 2999), longGames.discounts[2999]);
+    }
+
+    /**
+     * Base payoff of a round with the payoffs of the test simulations.
+     */
+    private static double basePayoff(boolean exploit, boolean opponentExploits) {
+        if (exploit)
+            return opponentExploits ? 3 : 10;
+        return opponentExploits ? 0 : 7;
+    }
+
+    /**
+     * Matching schemes should only pair distinct prisoners, a regular graph should give every prisoner the same number
+     * of distinct opponents, and a simulation using a scheme should be reproducible under a seed.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testMatchingSchemes() throws Exception {
+        Random r = new Random(1);
+        MatchingScheme[] schemes = {new KOpponentMatching(3), new RegularGraphMatching(5),
+                new RandomPairingMatching(2)};
+        int[] expectedGames = {60, 50, 20};
+        for (int i = 0; i < schemes.length; i++) {
+            int[] games = schemes[i].pair(20, r);
+            assertEquals(schemes[i].getClass().getSimpleName() + " games", expectedGames[i], games.length / 2);
+            for (int game = 0; game < games.length; game += 2)
+                assertNotEquals("Prisoner playing itself", games[game], games[game + 1]);
+        }
+
+        int[] games = new RegularGraphMatching(4).pair(9, r);
+        int[] degrees = new int[9];
+        Set<Long> edges = new HashSet<>();
+        for (int game = 0; game < games.length; game += 2) {
+            degrees[games[game]]++;
+            degrees[games[game + 1]]++;
+            edges.add((long) Math.min(games[game], games[game + 1]) * 9 + Math.max(games[game], games[game + 1]));
+        }
+        for (int degree : degrees)
+            assertEquals("Games per prisoner", 4, degree);
+        assertEquals("Distinct opponents", games.length / 2, edges.size());
+
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 30);
+        popInit.put("AlwaysExploit", 30);
+        popInit.put("AlwaysComply", 30);
+        Evolution first = new Evolution(popInit, 10, 1, 5, null, 10, 0, 7, 3);
+        Evolution second = new Evolution(popInit, 10, 1, 5, null, 10, 0, 7, 3);
+        first.setMatchingScheme(new KOpponentMatching(4));
+        second.setMatchingScheme(new KOpponentMatching(4));
+        for (int i = 0; i < 5; i++) {
+            first.doGeneration();
+            second.doGeneration();
+            assertEquals("Population after generation " + i, first.getPopulation(), second.getPopulation());
+            assertEquals("Population size", 90, first.getPrisoners().size());
+        }
+    }
+
+    /**
+     * Every generation of the spatial simulation should match a full recomputation of the grid, where every cell
+     * takes the strategy of the fittest prisoner around it, whatever the number of threads.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testSpatialEvolution() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 1000);
+        popInit.put("AlwaysExploit", 1000);
+        popInit.put("AlwaysComply", 1500);
+        SpatialEvolution grid = new SpatialEvolution(popInit, 70, 50, SpatialEvolution.Neighbourhood.MOORE, 10, 1,
+                3, .9, 10, 0, 7, 3);
+        SpatialEvolution parallelGrid = new SpatialEvolution(popInit, 70, 50, SpatialEvolution.Neighbourhood.MOORE,
+                10, 1, 3, .9, 10, 0, 7, 3);
+        parallelGrid.setParallelism(4);
+
+        List<String> names = Arrays.asList("AlwaysComply", "AlwaysExploit", "TitForTat");
+        int[] dx = {-1, 0, 1, -1, 1, -1, 0, 1};
+        int[] dy = {-1, -1, -1, 0, 0, 1, 1, 1};
+        for (int generation = 0; generation < 8; generation++) {
+            // a prisoner placed by hand has to be picked up by the incremental updates as well
+            if (generation == 4)
+                grid.setStrategy(10, 10, "AlwaysExploit");
+            if (generation == 4)
+                parallelGrid.setStrategy(10, 10, "AlwaysExploit");
+
+            int[][] before = new int[70][50];
+            for (int x = 0; x < 70; x++)
+                for (int y = 0; y < 50; y++)
+                    before[x][y] = names.indexOf(grid.getStrategy(x, y));
+
+            double[][] scores = new double[70][50];
+            for (int x = 0; x < 70; x++)
+                for (int y = 0; y < 50; y++)
+                    for (int n = 0; n < 8; n++)
+                        scores[x][y] += grid.payoffs[before[x][y]][before[(x + dx[n] + 70) % 70][(y + dy[n] + 50) % 50]];
+
+            grid.doGeneration();
+            parallelGrid.doGeneration();
+            for (int x = 0; x < 70; x++) {
+                for (int y = 0; y < 50; y++) {
+                    int fittestX = x;
+                    int fittestY = y;
+                    for (int n = 0; n < 8; n++) {
+                        int nx = (x + dx[n] + 70) % 70;
+                        int ny = (y + dy[n] + 50) % 50;
+                        if (scores[nx][ny] > scores[fittestX][fittestY]) {
+                            fittestX = nx;
+                            fittestY = ny;
+                        }
+                    }
+                    assertEquals("Cell " + x + "," + y + " in generation " + generation,
+                            names.get(before[fittestX][fittestY]), grid.getStrategy(x, y));
+                    assertEquals("Parallel cell " + x + "," + y, grid.getStrategy(x, y), parallelGrid.getStrategy(x, y));
+                }
+            }
+        }
+        assertEquals("Population", grid.getPopulation(), parallelGrid.getPopulation());
+        assertEquals("Generation counter", 8, grid.getGeneration());
+        parallelGrid.setParallelism(0);
+
+        HashMap<String, Integer> genomes = new HashMap<>();
+        genomes.put("LookupTablePrisoner", 4);
+        try {
+            new SpatialEvolution(genomes, 2, 2, SpatialEvolution.Neighbourhood.MOORE, 10, 1, 3, .9, 10, 0, 7, 3);
+            fail("Strategy with a genome accepted on the grid");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Migration should carry strategies between islands while keeping every island's size, and a seeded island model
+     * should be reproducible.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testIslandModel() throws Exception {
+        HashMap<String, Integer> exploiters = new HashMap<>();
+        exploiters.put("AlwaysExploit", 20);
+        HashMap<String, Integer> compliers = new HashMap<>();
+        compliers.put("AlwaysComply", 20);
+        HashMap<String, Integer> mixed = new HashMap<>();
+        mixed.put("TitForTat", 10);
+        mixed.put("AlwaysComply", 10);
+
+        Map<?, ?> firstPopulation = null;
+        for (int run = 0; run < 2; run++) {
+            List<Evolution> islands = Arrays.asList(
+                    new Evolution(exploiters, 10, 1, 1, null, 10, 0, 7, 3),
+                    new Evolution(compliers, 10, 1, 2, null, 10, 0, 7, 3),
+                    new Evolution(mixed, 10, 1, 3, null, 10, 0, 7, 3));
+            IslandModel model = new IslandModel(islands, 2, 3);
+            model.run(3);
+            model.run(3);
+
+            assertEquals("Generation counter", 6, model.getGeneration());
+            for (Evolution island : model.getIslands()) {
+                assertEquals("Island size", 20, island.getPrisoners().size());
+                int counted = 0;
+                for (Object count : island.getPopulation().values())
+                    counted += (Integer) count;
+                assertEquals("Island population", 20, counted);
+            }
+            // the compliers' island received exploiters at the first migration
+            assertNotNull("Migrants arrived", islands.get(1).getPopulation().get("AlwaysExploit"));
+
+            if (run == 0)
+                firstPopulation = new HashMap<>(model.getPopulation());
+            else
+                assertEquals("Same populations with the same seeds", firstPopulation, model.getPopulation());
+        }
+    }
+
+    /**
+     * A tournament sharded over workers on localhost should play the same generations whatever the number of workers.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testShardedTournament() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 15);
+        popInit.put("AlwaysExploit", 15);
+        popInit.put("AlwaysComply", 15);
+
+        TournamentWorker worker1 = new TournamentWorker(0);
+        TournamentWorker worker2 = new TournamentWorker(0);
+        for (TournamentWorker worker : Arrays.asList(worker1, worker2)) {
+            Thread serving = new Thread(() -> {
+                try {
+                    worker.serve();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            serving.setDaemon(true);
+            serving.start();
+        }
+
+        InetSocketAddress address1 = new InetSocketAddress(InetAddress.getLoopbackAddress(), worker1.getPort());
+        InetSocketAddress address2 = new InetSocketAddress(InetAddress.getLoopbackAddress(), worker2.getPort());
+        Evolution oneWorker = new Evolution(popInit, 10, 1, 4, null, 10, 0, 7, 3);
+        Evolution twoWorkers = new Evolution(popInit, 10, 1, 4, null, 10, 0, 7, 3);
+        try {
+            oneWorker.setWorkers(Collections.singletonList(address1), 4);
+            twoWorkers.setWorkers(Arrays.asList(address1, address2), 4);
+
+            GenerationMetrics[] metrics = new GenerationMetrics[2];
+            oneWorker.addListener(generation -> metrics[0] = generation);
+            twoWorkers.addListener(generation -> metrics[1] = generation);
+            for (int i = 0; i < 4; i++) {
+                oneWorker.doGeneration();
+                twoWorkers.doGeneration();
+                assertEquals("Population after generation " + i, oneWorker.getPopulation(), twoWorkers.getPopulation());
+                assertEquals("Scores after generation " + i, metrics[0].getMeanScore(), metrics[1].getMeanScore());
+                assertEquals("Rounds played", metrics[0].getRoundsPlayed(), metrics[1].getRoundsPlayed());
+                assertEquals("Population size", 45, oneWorker.getPrisoners().size());
+            }
+
+            // a restored sharded run plays the blocks itself and stays on the trajectory of the workers
+            Path file = Files.createTempFile("sharded", ".checkpoint");
+            try {
+                try (Checkpointer checkpointer = new Checkpointer(twoWorkers, file, 1)) {
+                    checkpointer.checkpoint().get();
+                }
+                Evolution restored = Checkpointer.restore(file);
+                for (int i = 0; i < 3; i++) {
+                    twoWorkers.doGeneration();
+                    restored.doGeneration();
+                    assertEquals("Restored population after generation " + i, twoWorkers.getPopulation(),
+                            restored.getPopulation());
+                    assertEquals("Restored fitness after generation " + i, twoWorkers.getMeanFitness(),
+                            restored.getMeanFitness());
+                }
+            } finally {
+                Files.delete(file);
+            }
+        } finally {
+            oneWorker.setParallelism(0);
+            twoWorkers.setParallelism(0);
+            worker1.close();
+            worker2.close();
+        }
+
+        // prisoners the workers cannot recreate from their class are rejected
+        ShardedTournament.checkShardable(Arrays.asList(new TitForTat(), new AlwaysExploit()));
+        ShardedTournament.checkShardable(Arrays.asList(new GenerousTitForTat(), new WinStayLoseShift()));
+        for (Prisoner rejected : Arrays.asList(new LookupTablePrisoner(), new Grudger(), new GenerousTitForTat())) {
+            try {
+                ShardedTournament.checkShardable(Arrays.asList(new TitForTat(), rejected));
+                fail("Sharded tournament with " + rejected.getClass().getSimpleName());
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * The convergence detector should stop at fixation, and at a population that stays within the tolerance for the
+     * whole window but not before.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testConvergenceDetector() throws Exception {
+        ConvergenceDetector stable = new ConvergenceDetector(3, .05);
+        int[][] counts = {{50, 50}, {60, 40}, {62, 38}, {64, 36}, {63, 37}};
+        for (int i = 0; i < counts.length; i++) {
+            assertFalse("Converged before generation " + (i + 1), stable.isConverged());
+            HashMap<String, Integer> population = new HashMap<>();
+            population.put("TitForTat", counts[i][0]);
+            population.put("AlwaysExploit", counts[i][1]);
+            stable.generationCompleted(new GenerationMetrics(i + 1, 0, 0, 0, 0, 0, 0, 0, 0, population));
+        }
+        assertTrue("Stable for three generations", stable.isConverged());
+
+        ConvergenceDetector fixation = new ConvergenceDetector(0, 0);
+        HashMap<String, Integer> population = new HashMap<>();
+        population.put("TitForTat", 100);
+        population.put("AlwaysExploit", 0);
+        fixation.generationCompleted(new GenerationMetrics(1, 0, 0, 0, 0, 0, 0, 0, 0, population));
+        assertTrue("Fixation", fixation.isConverged());
+        assertTrue("Fixation reason", fixation.getReason().startsWith("fixation of TitForTat"));
+
+        // the genomes of a single strategy may still be evolving
+        ConvergenceDetector genomes = new ConvergenceDetector(0, 0);
+        population = new HashMap<>();
+        population.put("LookupTablePrisoner", 100);
+        population.put("TitForTat", 0);
+        genomes.generationCompleted(new GenerationMetrics(1, 0, 0, 0, 0, 0, 0, 0, 0, population));
+        assertFalse("No fixation of a strategy with a genome", genomes.isConverged());
+
+        // a simulation run with the detector stops once AlwaysExploit has taken over
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("AlwaysExploit", 50);
+        popInit.put("AlwaysComply", 50);
+        Evolution run = new Evolution(popInit, 10, 1, 1, .9, 10, 0, 7, 3);
+        ConvergenceDetector detector = new ConvergenceDetector(0, 0);
+        run.addListener(detector);
+        while (run.getGeneration() < 100 && !detector.isConverged())
+            run.doGeneration();
+        assertTrue("Simulation stopped early", run.getGeneration() < 100);
+        assertEquals("Only exploiters left", Integer.valueOf(100), run.getPopulation().get("AlwaysExploit"));
+    }
+
+    /**
+     * Strategies should get dense ids that prisoners carry, and the population counters should match the prisoners.
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testStrategyIds() throws Exception {
+        int titForTat = StrategyRegistry.getId(TitForTat.class);
+        assertEquals("Same id every time", titForTat, StrategyRegistry.getId(TitForTat.class));
+        assertEquals("Prisoner carries the id", titForTat, new TitForTat().getStrategyId());
+        assertEquals("Class of the id", TitForTat.class, StrategyRegistry.getStrategy(titForTat));
+        assertNotEquals("Distinct ids", titForTat, StrategyRegistry.getId(AlwaysExploit.class));
+        assertTrue("Dense ids", StrategyRegistry.getId(AlwaysExploit.class) < StrategyRegistry.getNumIds());
+
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 12);
+        popInit.put("AlwaysExploit", 8);
+        Evolution counted = new Evolution(popInit, 10, 1, 3, .9, 10, 0, 7, 3);
+        assertEquals("Initial population", popInit, counted.getPopulation());
+        for (int i = 0; i < 3; i++) {
+            counted.doGeneration();
+            HashMap<String, Integer> expected = new HashMap<>();
+            expected.put("TitForTat", 0);
+            expected.put("AlwaysExploit", 0);
+            for (Object prisoner : counted.getPrisoners())
+                expected.merge(prisoner.getClass().getSimpleName(), 1, Integer::sum);
+            assertEquals("Population after generation " + i, expected, counted.getPopulation());
+            assertEquals("Mean fitness per strategy", 2, counted.getMeanFitness().size());
+        }
+    }
+
+    /**
+     * Tests that prisoners get dense ids that are recycled between generations, and that a grudge kept in the
+     * opponent memory lasts from one game to the next but not past the death of the prisoner it was held against.
+     *
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testOpponentMemory() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("Grudger", 10);
+        popInit.put("AlwaysExploit", 6);
+        popInit.put("TitForTat", 4);
+        Evolution evo = new Evolution(popInit, 10, 1, 3, .9, 10, 0, 7, 3);
+        for (int generation = 0; generation < 4; generation++) {
+            Set<Integer> ids = new HashSet<>();
+            for (Object prisoner : evo.getPrisoners()) {
+                int id = ((Prisoner) prisoner).getPrisonerId();
+                assertTrue("Id within the population", id >= 0 && id < 20);
+                ids.add(id);
+            }
+            assertEquals("Unique ids in generation " + generation, 20, ids.size());
+            evo.doGeneration();
+        }
+
+        OpponentMemory memory = new OpponentMemory(70);
+        ScoreBoard memoryBoard = new ScoreBoard(70);
+        memoryBoard.setOpponentMemory(memory);
+        Grudger grudger = new Grudger();
+        grudger.assignId(3, memoryBoard);
+        grudger.notifyOtherPrisoner(65);
+        assertFalse("Complies with a stranger", grudger.choose());
+        grudger.notifyOpponentChoice(true);
+        grudger.notifyGameOver();
+        grudger.notifyOtherPrisoner(65);
+        assertTrue("Grudge lasts into the next game", grudger.choose());
+        grudger.notifyGameOver();
+        grudger.notifyOtherPrisoner(64);
+        assertFalse("Grudge is held against one opponent", grudger.choose());
+        grudger.notifyGameOver();
+
+        memory.forget(65);
+        grudger.notifyOtherPrisoner(65);
+        assertFalse("Forgotten once the id is recycled", grudger.choose());
+        memory.set(3, 65, true);
+        memory.forget(3);
+        assertFalse("Forgets what the id remembered", memory.get(3, 65));
+
+        Grudger alone = new Grudger();
+        alone.notifyOtherPrisoner(65);
+        alone.notifyOpponentChoice(true);
+        assertTrue("Grudge within a game without memory", alone.choose());
+        alone.notifyGameOver();
+        assertFalse("Grudge ends with the game without memory", alone.choose());
+    }
+
+    /**
+     * Tests that the noise makes errors at the requested rate, that action and perception errors change the games on
+     * the transition tables as well as the games played round by round, and that a seeded noisy simulation does not
+     * depend on the number of threads.
+     *
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testNoise() throws Exception {
+        GameNoise never = new GameNoise(0, 0, 1);
+        GameNoise always = new GameNoise(1, 1, 1);
+        GameNoise sometimes = new GameNoise(.1, .02, 1);
+        int actionErrors = 0;
+        int perceptionErrors = 0;
+        for (int i = 0; i < 100000; i++) {
+            assertFalse("No action errors", never.actionError());
+            assertFalse("No perception errors", never.perceptionError());
+            assertTrue("Only action errors", always.actionError());
+            assertTrue("Only perception errors", always.perceptionError());
+            if (sometimes.actionError())
+                actionErrors++;
+            if (sometimes.perceptionError())
+                perceptionErrors++;
+        }
+        assertEquals("Action error rate", .1, actionErrors / 100000., .005);
+        assertEquals("Perception error rate", .02, perceptionErrors / 100000., .002);
+
+        Evolution rules = new Evolution(new HashMap<>(), 10, 1, null, 1., 10, 0, 7, 3);
+        rules.setNoise(1, 0);
+        Prisoner complier1 = new AlwaysComply();
+        Prisoner complier2 = new AlwaysComply();
+        new InterrogationRoom(5, complier1, complier2, 1, rules, 1).simulateGame();
+        assertEquals("Compliers that always err exploit", 5 * basePayoff(true, true), complier1.getCumulativeScore());
+
+        rules.setNoise(0, 1);
+        Prisoner titForTat1 = new TitForTat();
+        Prisoner titForTat2 = new TitForTat();
+        new InterrogationRoom(4, titForTat1, titForTat2, 1, rules, 1).simulateGame();
+        assertEquals("Tit for tat sees the opposite", 2 * basePayoff(false, false) + 2 * basePayoff(true, true),
+                titForTat2.getCumulativeScore());
+        Prisoner grudger1 = new Grudger();
+        Prisoner grudger2 = new Grudger();
+        new InterrogationRoom(4, grudger1, grudger2, 1, rules, 1).simulateGame();
+        assertEquals("Grudger sees an exploit after the first round",
+                basePayoff(false, false) + 3 * basePayoff(true, true), grudger1.getCumulativeScore());
+
+        try {
+            rules.setNoise(-.1, 0);
+            fail("A negative probability is rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 12);
+        popInit.put("Grudger", 10);
+        popInit.put("AlwaysExploit", 10);
+        Evolution evo1 = new Evolution(popInit, 20, 10, 5, .95, 10, 0, 7, 3);
+        Evolution evo2 = new Evolution(popInit, 20, 10, 5, .95, 10, 0, 7, 3);
+        evo1.setNoise(.05, .05);
+        evo2.setNoise(.05, .05);
+        evo1.setParallelism(1);
+        evo2.setParallelism(3);
+        for (int i = 0; i < 5; i++) {
+            evo1.doGeneration();
+            evo2.doGeneration();
+            assertEquals("Same noisy populations in generation " + i, evo1.getPopulation(), evo2.getPopulation());
+        }
+        evo1.setParallelism(0);
+        evo2.setParallelism(0);
+    }
+
+    /**
+     * Tests that games between memory-one prisoners pay the expected payoffs of the Markov chain, with and without
+     * noise, both for single games and for the batches of the payoff matrix.
+     *
+     * @throws Exception test has failed if exception thrown
+     */
+    @SuppressWarnings("unchecked")
+    public void testMemoryOneKernel() throws Exception {
+        Evolution rules = new Evolution(new HashMap<>(), 10, 1, null, 1., 10, 0, 7, 3);
+        Prisoner generous1 = new GenerousTitForTat();
+        Prisoner generous2 = new GenerousTitForTat();
+        new InterrogationRoom(5, generous1, generous2, 1, rules).simulateGame();
+        assertEquals("Generous prisoners comply", 5 * basePayoff(false, false), generous1.getCumulativeScore(), 1e-9);
+
+        // sample the same noisy game round by round and compare the average with the exact expectation
+        double[] exact = rules.memoryOneKernel.play(new GenerousTitForTat(), new WinStayLoseShift(), 6, .9, null,
+                .1, .05);
+        MemoryOnePrisoner sampled1 = new GenerousTitForTat();
+        MemoryOnePrisoner sampled2 = new WinStayLoseShift();
+        int numGames = 100000;
+        double total1 = 0;
+        double total2 = 0;
+        for (int game = 0; game < numGames; game++) {
+            GameNoise noise = new GameNoise(.1, .05, game);
+            sampled1.notifyGameSeed(game);
+            sampled2.notifyGameSeed(~game);
+            for (int round = 0; round < 6; round++) {
+                boolean choice1 = sampled1.choose() ^ noise.actionError();
+                boolean choice2 = sampled2.choose() ^ noise.actionError();
+                total1 += basePayoff(choice1, choice2) * Math.pow(.9, round);
+                total2 += basePayoff(choice2, choice1) * Math.pow(.9, round);
+                sampled1.notifyOpponentChoice(choice2 ^ noise.perceptionError());
+                sampled2.notifyOpponentChoice(choice1 ^ noise.perceptionError());
+            }
+            sampled1.notifyGameOver();
+            sampled2.notifyGameOver();
+        }
+        assertEquals("Expected payoff to the first prisoner", exact[0], total1 / numGames, .1);
+        assertEquals("Expected payoff to the second prisoner", exact[1], total2 / numGames, .1);
+
+        List<Supplier<Prisoner>> strategies = Arrays.asList(StrategyRegistry.register(GenerousTitForTat.class),
+                StrategyRegistry.register(WinStayLoseShift.class), StrategyRegistry.register(TitForTat.class));
+        double[][] matrix = PayoffMatrix.build(strategies, rules, new Random(1));
+        // games of 1 to 9 rounds in which both prisoners always comply
+        assertEquals("Batch of memory-one pairings", 5 * basePayoff(false, false), matrix[0][1], 1e-9);
+        assertEquals("Memory-one against tit for tat", 5 * basePayoff(false, false), matrix[0][2], 1e-9);
+        double[] single = rules.memoryOneKernel.play(new GenerousTitForTat(), new WinStayLoseShift(), 4, 1, null, 0,
+                0);
+        assertEquals("Single game", 4 * basePayoff(false, false), single[1], 1e-9);
+        double[] batch1 = new double[1];
+        double[] batch2 = new double[1];
+        rules.memoryOneKernel.evaluate(new MemoryOnePrisoner[] {new GenerousTitForTat()},
+                new MemoryOnePrisoner[] {new WinStayLoseShift()}, 6, 7, .9, null, .1, .05, batch1, batch2);
+        assertEquals("Single game like a batch of one", exact[0], batch1[0], 1e-12);
+        assertEquals("Single game like a batch of one", exact[1], batch2[0], 1e-12);
+
+        // sampled games against other strategies draw from the random source of the simulation
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("GenerousTitForTat", 20);
+        popInit.put("AlwaysExploit", 20);
+        ArrayList<HashMap<String, Double>> fitness = new ArrayList<>();
+        for (int seed : new int[] {1, 1, 2}) {
+            Evolution seeded = new Evolution(popInit, 6, 5, seed, 1., 10, 0, 7, 3);
+            seeded.doGeneration();
+            fitness.add(seeded.getMeanFitness());
+        }
+        assertEquals("Same seed, same games", fitness.get(0), fitness.get(1));
+        assertFalse("Other seed, other games", fitness.get(0).equals(fitness.get(2)));
+
+        try {
+            new MemoryOnePrisoner(1.5, 0, 0, 0, 0) {};
+            fail("A probability above 1 is rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Tests that incremental scoring only plays the games involving new prisoners and otherwise leaves the simulation
+     * exactly as it was, on the calling thread as well as in the multi-core mode.
+     *
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testIncrementalScoring() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("GenerousTitForTat", 10);
+        popInit.put("WinStayLoseShift", 8);
+        popInit.put("TitForTat", 6);
+        popInit.put("AlwaysExploit", 6);
+        popInit.put("Grudger", 4);
+
+        for (int threads = 0; threads <= 2; threads += 2) {
+            Evolution full = new Evolution(popInit, 11, 10, 9, .9, 10, 0, 7, 3);
+            Evolution incremental = new Evolution(popInit, 11, 10, 9, .9, 10, 0, 7, 3);
+            full.setNoise(.01, 0);
+            incremental.setNoise(.01, 0);
+            full.setParallelism(threads);
+            incremental.setParallelism(threads);
+            incremental.setIncrementalScoring(true);
+            List<Long> rounds = new ArrayList<>();
+            List<Long> fullRounds = new ArrayList<>();
+            incremental.addListener(metrics -> rounds.add(metrics.getRoundsPlayed()));
+            full.addListener(metrics -> fullRounds.add(metrics.getRoundsPlayed()));
+
+            for (int i = 0; i < 5; i++) {
+                full.doGeneration();
+                incremental.doGeneration();
+                assertEquals("Same population in generation " + i, full.getPopulation(), incremental.getPopulation());
+                assertEquals("Same fitness in generation " + i, full.getMeanFitness(), incremental.getMeanFitness());
+            }
+            assertEquals("First generation plays every game", 34 * 33 / 2 * 10L, (long) rounds.get(0));
+            assertEquals("Reused games count their rounds", fullRounds, rounds);
+            full.setParallelism(0);
+            incremental.setParallelism(0);
+        }
+
+        Evolution randomWeight = new Evolution(popInit, 11, 10, 9, null, 10, 0, 7, 3);
+        try {
+            randomWeight.setIncrementalScoring(true);
+            fail("Incremental scoring needs a fixed weight");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    /**
+     * Tests that the asynchronous runner runs generations on its own thread, publishes immutable snapshots, and
+     * follows the pause, resume and stop controls.
+     *
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testAsyncEvolutionRunner() throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 12);
+        popInit.put("AlwaysExploit", 8);
+        Evolution evo = new Evolution(popInit, 10, 1, 3, .9, 10, 0, 7, 3);
+        AsyncEvolutionRunner runner = new AsyncEvolutionRunner(evo);
+        assertNull("No snapshot before the first generation", runner.getSnapshot());
+
+        runner.start();
+        try {
+            runner.start();
+            fail("A runner starts once");
+        } catch (IllegalStateException expected) {
+        }
+        GenerationMetrics snapshot = awaitGeneration(runner, 3);
+        assertEquals("Whole population in the snapshot", 20,
+                snapshot.getPopulation().values().stream().mapToInt(Integer::intValue).sum());
+        try {
+            snapshot.getPopulation().put("TitForTat", 0);
+            fail("The snapshot cannot be changed");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        runner.pause();
+        Thread.sleep(200);
+        int pausedAt = runner.getSnapshot().getGeneration();
+        Thread.sleep(200);
+        assertEquals("No generations while paused", pausedAt, runner.getSnapshot().getGeneration());
+        assertTrue("Still running while paused", runner.isRunning());
+
+        runner.resume();
+        awaitGeneration(runner, pausedAt + 3);
+        runner.stop();
+        assertFalse("Stopped", runner.isRunning());
+        assertNull("No failure", runner.getFailure());
+        assertEquals("Snapshot of the last generation", evo.getGeneration(), runner.getSnapshot().getGeneration());
+    }
+
+    /**
+     * Waits until a runner has completed a generation, failing after ten seconds.
+     */
+    private static GenerationMetrics awaitGeneration(AsyncEvolutionRunner runner, int generation)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (runner.getSnapshot() == null || runner.getSnapshot().getGeneration() < generation) {
+            assertTrue("Generation " + generation + " completed in time", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        return runner.getSnapshot();
+    }
+
+    /**
+     * Tests that prisoners keep their scores on a board of their own until a simulation moves them to its score board,
+     * and that the scores of a simulation are reset in bulk at the end of a generation.
+     *
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testScoreBoard() throws Exception {
+        Prisoner alone = new TitForTat();
+        assertEquals("No score yet", 0., alone.getCumulativeScore());
+        alone.updateScore(7);
+        alone.updateScore(3);
+        assertEquals("Game score", 10., alone.getScore());
+        alone.resetGameScore();
+        assertEquals("Game score reset", 0., alone.getScore());
+        assertEquals("Cumulative score kept", 10., alone.getCumulativeScore());
+
+        ScoreBoard board = new ScoreBoard(8);
+        alone.assignId(5, board);
+        assertEquals("Scores move to the board", 10., board.getCumulativeScore(5));
+        alone.updateScore(2);
+        assertEquals("Getter reads the board", 12., alone.getCumulativeScore());
+        board.resetCumulativeScores();
+        assertEquals("Bulk reset", 0., alone.getCumulativeScore());
+
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("TitForTat", 12);
+        popInit.put("AlwaysExploit", 8);
+        Evolution evo = new Evolution(popInit, 10, 1, 3, .9, 10, 0, 7, 3);
+        evo.addPrisoners("AlwaysComply", 4);
+        for (int i = 0; i < 3; i++) {
+            evo.doGeneration();
+            for (Object prisoner : evo.getPrisoners())
+                assertEquals("Scores reset after generation " + i, 0., ((Prisoner) prisoner).getCumulativeScore());
+        }
+        assertEquals("Prisoners added later are scored", 24, evo.getPrisoners().size());
+
+        // prisoners swapped in through getPrisoners() are scored like the prisoners they replaced
+        Evolution control = new Evolution(popInit, 10, 1, 5, .9, 10, 0, 7, 3);
+        Evolution swapped = new Evolution(popInit, 10, 1, 5, .9, 10, 0, 7, 3);
+        @SuppressWarnings("unchecked")
+        ArrayList<Prisoner> swappedPrisoners = swapped.getPrisoners();
+        for (int i = 0; i < swappedPrisoners.size(); i++) {
+            if (swappedPrisoners.get(i) instanceof AlwaysExploit)
+                swappedPrisoners.set(i, new AlwaysExploit());
+        }
+        control.doGeneration();
+        swapped.doGeneration();
+        assertEquals("Swapped prisoners are scored", control.getMeanFitness(), swapped.getMeanFitness());
+    }
+
+    /**
+     * Tests that lookup table prisoners play their genome on the history of the game, and that their offspring are
+     * mutated and recombined with the mate.
+     *
+     * @throws Exception test has failed if exception thrown
+     */
+    public void testLookupTablePrisoner() throws Exception {
+        Evolution rules = new Evolution(new HashMap<>(), 10, 1, null, 1., 10, 0, 7, 3);
+        Prisoner titForTat = new LookupTablePrisoner(1, LookupTablePrisoner.titForTat(1), 0, 0);
+        Prisoner exploiter = new AlwaysExploit();
+        new InterrogationRoom(4, titForTat, exploiter, 1, rules).simulateGame();
+        assertEquals("Tit for tat genome", basePayoff(false, true) + 3 * basePayoff(true, true),
+                titForTat.getCumulativeScore());
+
+        // exploits once the opponent exploited in both of the last two rounds (bits 0 and 2 of the history)
+        long titForTwoTats = 0;
+        for (int history = 0; history < 16; history++) {
+            if ((history & 5) == 5)
+                titForTwoTats |= 1L << history;
+        }
+        Prisoner forgiving = new LookupTablePrisoner(2, titForTwoTats, 0, 0);
+        new InterrogationRoom(4, forgiving, new AlwaysExploit(), 1, rules).simulateGame();
+        assertEquals("Memory of two rounds", 2 * basePayoff(false, true) + 2 * basePayoff(true, true),
+                forgiving.getCumulativeScore());
+
+        LookupTablePrisoner parent = new LookupTablePrisoner(3, 0x0123456789abcdefL, 0, 0);
+        assertEquals("Copy without mutation", parent.getGenome(), ((LookupTablePrisoner) parent.evolve()).getGenome());
+        LookupTablePrisoner flipping = new LookupTablePrisoner(3, 0x0123456789abcdefL, 1, 0);
+        assertEquals("Every bit mutated", ~parent.getGenome(), ((LookupTablePrisoner) flipping.evolve()).getGenome());
+        LookupTablePrisoner crossing = new LookupTablePrisoner(3, -1, 0, 1);
+        long child = ((LookupTablePrisoner) crossing.evolve(new LookupTablePrisoner(3, 0, 0, 0))).getGenome();
+        assertEquals("Bits below the point from the parent, above it from the mate", 0, child & (child + 1));
+        assertTrue("Some bits from the mate", child != -1);
+        LookupTablePrisoner twin1 = new LookupTablePrisoner();
+        LookupTablePrisoner twin2 = new LookupTablePrisoner();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("Offspring without a seed are reproducible",
+                    ((LookupTablePrisoner) twin1.evolve()).getGenome(),
+                    ((LookupTablePrisoner) twin2.evolve()).getGenome());
+        }
+
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("LookupTablePrisoner", 40);
+        Evolution evo = new Evolution(popInit, 10, 1, 3, .9, 10, 0, 7, 3);
+        for (int i = 0; i < 3; i++)
+            evo.doGeneration();
+        Set<Long> genomes = new HashSet<>();
+        for (Object prisoner : evo.getPrisoners())
+            genomes.add(((LookupTablePrisoner) prisoner).getGenome());
+        assertTrue("Genomes diversify", genomes.size() > 1);
+
+        // the offspring are seeded by the simulation
+        assertEquals("Same seed, same genomes", evolveGenomes(1), evolveGenomes(1));
+        assertFalse("Other seed, other genomes", evolveGenomes(1).equals(evolveGenomes(2)));
+    }
+
+    /**
+     * @return the genomes of a seeded population of lookup table prisoners after five generations, in order
+     */
+    private List<Long> evolveGenomes(int seed) throws Exception {
+        HashMap<String, Integer> popInit = new HashMap<>();
+        popInit.put("LookupTablePrisoner", 40);
+        Evolution evo = new Evolution(popInit, 10, 1, seed, .9, 10, 0, 7, 3);
+        for (int i = 0; i < 5; i++)
+            evo.doGeneration();
+        List<Long> genomes = new ArrayList<>();
+        for (Object prisoner : evo.getPrisoners())
+            genomes.add(((LookupTablePrisoner) prisoner).getGenome());
+        return genomes;
+    }
 }
@@ -1,35 +1,89 @@
 package model;
 
 import Strategies.*;
-import com.sun.istack.internal.Nullable;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.*;
+import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 /**
  * Class to simulate evolution of strategies within the prisoner's dilemma game.
  */
 public class Evolution {
 
+    /** Version of the snapshot format written by writeSnapshot() */
+    private static final int SNAPSHOT_VERSION = 6;
+
     /** The list of all prisoner objects in the simulation */
     private ArrayList<Prisoner> prisoners = new ArrayList<>();
-    /** The mapping giving the number of each prisoner strategy to add to this simulation */
-    private HashMap<String, Integer> prisonerPopulations;
+    /** The ids (see StrategyRegistry) of the strategies in this simulation, in the order they were added */
+    private int[] strategyIds = new int[0];
+    /** The number of prisoners of each strategy, indexed by strategy id */
+    private int[] populationCounts = new int[0];
+    /** Unmodifiable view of the population counters, returned by getPopulation() */
+    private final Map<String, Integer> populationView = new PopulationView();
+    /** The mean fitness of the prisoners of each strategy in the last generation, indexed by strategy id */
+    private double[] meanFitness = new double[0];
+    /** The scores of the prisoners by prisoner id */
+    private ScoreBoard scoreBoard;
+    /** Bits remembered by prisoners about their opponents, null until a prisoner asks for it */
+    private OpponentMemory opponentMemory;
+    /** Which prisoner ids are in use while ids are handed out, reused every generation */
+    private boolean[] idTaken = new boolean[0];
+    /** Which prisoners keep their id while ids are handed out, reused every generation */
+    private boolean[] keepsId = new boolean[0];
     /** Total number of prisoners in this simulation */
     private final int numPrisoners;
     /** The random number generator for this object */
     private Random r;
     /** The maximum number of rounds in a given "game" between two prisoners */
-    private final int MAX_ROUNDS;
+    final int MAX_ROUNDS;
     /** The minimum number of rounds in a given "game" between two prisoners */
-    private final int MIN_ROUNDS;
+    final int MIN_ROUNDS;
     /** The current generation */
     private int generation = 0;
     /** Weight used to calculate payouts to players 0<w<=1 */
-    private double weight;
+    double weight;
     /** Should the weight be randomized? */
-    private final boolean randWeight;
+    final boolean randWeight;
+    /** Payoffs of games between deterministic prisoners, null if the weight is randomized */
+    final PayoffCache payoffCache;
+    /** Plays the games between finite state machine prisoners */
+    final FsmKernel fsmKernel;
+    /** Evaluates the games between memory-one prisoners */
+    final MemoryOneKernel memoryOneKernel;
+    /** Powers of the weight by round (weight^0 first) for every possible game, null if the weight is randomized */
+    final double[] discounts;
+    /** Probability that a prisoner makes the opposite move of the one it chose */
+    double actionNoise = 0;
+    /** Probability that a prisoner is told the opposite of the move its opponent made */
+    double perceptionNoise = 0;
+    /** Decides which prisoners survive and reproduce at the end of a generation */
+    private SelectionOperator selection = new TruncationSelection();
+    /** The prisoners of the current generation during selection, reused every generation */
+    private Prisoner[] currentGeneration = new Prisoner[0];
+    /** The prisoners of the next generation during selection, reused every generation */
+    private Prisoner[] nextGeneration = new Prisoner[0];
+    /** The fitness of the prisoners during selection, reused every generation */
+    private double[] fitness = new double[0];
+    /** Decides who plays whom each generation, null for the full round robin */
+    private MatchingScheme matching;
+    /** The number of games each prisoner played in the current generation, reused every generation */
+    private int[] gamesPlayed = new int[0];
+    /** Number of the fittest prisoners of each generation to keep offspring of for migration, 0 for none */
+    private int numEmigrants = 0;
+    /** Offspring of the fittest prisoners of the last generation, fittest first */
+    private Prisoner[] emigrants = new Prisoner[0];
+    /** Listeners receiving the metrics of every generation */
+    private final List<EvolutionListener> listeners = new CopyOnWriteArrayList<>();
+    /** Plays the games of each generation on other threads or processes, null if played on the calling thread */
+    private Tournament tournament;
+    /** Number of threads of the tournament, 0 if games are played on the calling thread */
+    private int parallelism = 0;
+    /** Payoffs of the round robin by prisoner id kept between generations, null unless scoring incrementally */
+    private PairPayoffStore pairStore;
     /** Payoff to a player that exploits while the other complies */
     final double EXPLOIT_COMPLY;
     /** Payoff to a player that complies while the other exploits */
@@ -54,12 +108,10 @@ public class Evolution {
      * @throws ClassNotFoundException from addPrisoners()
      * @throws NoSuchMethodException from addPrisoners()
      * @throws IllegalAccessException from addPrisoners()
-     * @throws InstantiationException from addPrisoners()
-     * @throws InvocationTargetException from addPrisoners()
      */
-    public Evolution(HashMap<String, Integer> prisonerInitialization, int maxRounds, int minRounds, @Nullable Integer randSeed,
-                     @Nullable Double weight, double exploit_comply, double comply_exploit, double comply_comply, double exploit_exploit)
-            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException {
+    public Evolution(HashMap<String, Integer> prisonerInitialization, int maxRounds, int minRounds, Integer randSeed,
+                     Double weight, double exploit_comply, double comply_exploit, double comply_comply, double exploit_exploit)
+            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException {
 
         if (randSeed != null)
             this.r = new Random(randSeed);
@@ -72,14 +124,18 @@ public class Evolution {
         } else {
             this.randWeight = true;
         }
+        // a random weight makes practically every game unique, so there is nothing to gain from caching
+        this.payoffCache = randWeight ? null : new PayoffCache();
 
-        this.prisonerPopulations = new HashMap<>();
         this.MAX_ROUNDS = maxRounds;
         this.MIN_ROUNDS = minRounds;
         this.EXPLOIT_COMPLY = exploit_comply;
         this.COMPLY_EXPLOIT = comply_exploit;
         this.COMPLY_COMPLY = comply_comply;
         this.EXPLOIT_EXPLOIT = exploit_exploit;
+        this.fsmKernel = new FsmKernel(this);
+        this.memoryOneKernel = new MemoryOneKernel(this);
+        this.discounts = randWeight ? null : discounts(this.weight, maxRounds);
 
         int cumulativePrisoners=0;
         // create the prisoner objects based on the initialization dictionary values
@@ -90,6 +146,114 @@ public class Evolution {
             addPrisoners(className, numToAdd);
         }
         this.numPrisoners = cumulativePrisoners;
+        assignPrisonerIds();
+    }
+
+    /**
+     * Restore an evolutionary simulator from a snapshot written by writeSnapshot().
+     * @param in stream positioned at the start of the snapshot
+     * @throws IOException thrown when the snapshot cannot be read
+     * @throws ClassNotFoundException thrown when a class of the snapshot (such as a strategy) cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    private Evolution(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        // version 1 snapshots were written before matching schemes existed
+        int version = in.readInt();
+        if (version < 1 || version > SNAPSHOT_VERSION)
+            throw new InvalidObjectException("Unsupported snapshot version");
+
+        this.generation = in.readInt();
+        this.numPrisoners = in.readInt();
+        this.MAX_ROUNDS = in.readInt();
+        this.MIN_ROUNDS = in.readInt();
+        this.weight = in.readDouble();
+        this.randWeight = in.readBoolean();
+        this.EXPLOIT_COMPLY = in.readDouble();
+        this.COMPLY_EXPLOIT = in.readDouble();
+        this.COMPLY_COMPLY = in.readDouble();
+        this.EXPLOIT_EXPLOIT = in.readDouble();
+        this.fsmKernel = new FsmKernel(this);
+        this.memoryOneKernel = new MemoryOneKernel(this);
+        this.discounts = randWeight ? null : discounts(weight, MAX_ROUNDS);
+        this.r = (Random) in.readObject();
+        this.selection = (SelectionOperator) in.readObject();
+        this.matching = version >= 2 ? (MatchingScheme) in.readObject() : null;
+        if (version >= 4)
+            setNoise(in.readDouble(), in.readDouble());
+        for (Map.Entry<String, Integer> entry : ((HashMap<String, Integer>) in.readObject()).entrySet()) {
+            int id = StrategyRegistry.getId(StrategyRegistry.classForName(entry.getKey()));
+            addStrategy(id);
+            populationCounts[id] = entry.getValue();
+        }
+        // the memory is written before the prisoners that refer to it
+        this.opponentMemory = version >= 3 ? (OpponentMemory) in.readObject() : null;
+        this.prisoners = (ArrayList<Prisoner>) in.readObject();
+        assignPrisonerIds();
+        this.payoffCache = randWeight ? null : new PayoffCache();
+        setParallelism(in.readInt());
+        // the stored payoffs are not part of the snapshot, the first generation after restoring plays all games
+        if (version >= 5 && in.readBoolean())
+            setIncrementalScoring(true);
+        // the workers of a sharded run are not part of the snapshot, their blocks are played on the calling thread
+        int parts = version >= 6 ? in.readInt() : 0;
+        if (parts > 0)
+            tournament = new ShardedTournament(this, parts);
+    }
+
+    /**
+     * Computes the discount of every round a game can have.
+     * @param weight weight or 'discount parameter' for successive turns
+     * @param maxRounds maximum number of rounds in a game
+     * @return weight^round for every round up to maxRounds
+     */
+    private static double[] discounts(double weight, int maxRounds) {
+        double[] discounts = new double[Math.max(maxRounds, 0)];
+        // Math.pow rather than repeated multiplication, so the table matches the weights computed during a game
+        for (int round = 0; round < discounts.length; round++)
+            discounts[round] = Math.pow(weight, round);
+        return discounts;
+    }
+
+    /**
+     * Writes the complete state of the simulation, so that a simulation restored from it continues exactly like
+     * this one would. Listeners are not part of the snapshot.
+     * @param out stream to write the snapshot to
+     * @throws IOException thrown when the snapshot cannot be written
+     */
+    void writeSnapshot(ObjectOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeInt(generation);
+        out.writeInt(numPrisoners);
+        out.writeInt(MAX_ROUNDS);
+        out.writeInt(MIN_ROUNDS);
+        out.writeDouble(weight);
+        out.writeBoolean(randWeight);
+        out.writeDouble(EXPLOIT_COMPLY);
+        out.writeDouble(COMPLY_EXPLOIT);
+        out.writeDouble(COMPLY_COMPLY);
+        out.writeDouble(EXPLOIT_EXPLOIT);
+        out.writeObject(r);
+        out.writeObject(selection);
+        out.writeObject(matching);
+        out.writeDouble(actionNoise);
+        out.writeDouble(perceptionNoise);
+        out.writeObject(new HashMap<>(populationView));
+        out.writeObject(opponentMemory);
+        out.writeObject(prisoners);
+        out.writeInt(parallelism);
+        out.writeBoolean(pairStore != null);
+        out.writeInt(tournament instanceof ShardedTournament ? ((ShardedTournament) tournament).getParts() : 0);
+    }
+
+    /**
+     * Reads a simulation from a snapshot written by writeSnapshot().
+     * @param in stream positioned at the start of the snapshot
+     * @return the restored simulation, without listeners
+     * @throws IOException thrown when the snapshot cannot be read
+     * @throws ClassNotFoundException thrown when a class of the snapshot (such as a strategy) cannot be found
+     */
+    static Evolution readSnapshot(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        return new Evolution(in);
     }
 
     /**
@@ -98,24 +262,116 @@ public class Evolution {
      * @param numToAdd number of these prisoners to add
      * @throws ClassNotFoundException could not find the strategy class based on the string given
      * @throws NoSuchMethodException could not acquire the constructor (no default constructor given)
+     * @throws IllegalAccessException the default constructor cannot be accessed
      */
     void addPrisoners(String className, int numToAdd) throws ClassNotFoundException, NoSuchMethodException,
-            IllegalAccessException, InvocationTargetException, InstantiationException {
+            IllegalAccessException {
 
         // cannot add prisoners in the middle of the simulation
         if (generation == 0 && numToAdd > 0) {
-            if (prisonerPopulations.containsKey(className))
-                prisonerPopulations.replace(className, prisonerPopulations.get(className) + numToAdd);
-            else
-                prisonerPopulations.put(className, numToAdd);
-
-            Class strategy = Class.forName("Strategies." + className.trim());
-            Constructor constructor = strategy.getConstructor();
+            Supplier<Prisoner> factory = StrategyRegistry.forName(className);
+            int id = StrategyRegistry.getId(StrategyRegistry.classForName(className));
+            addStrategy(id);
+            populationCounts[id] += numToAdd;
 
+            prisoners.ensureCapacity(prisoners.size() + numToAdd);
             for (int i = 0; i < numToAdd; i++) {
-                prisoners.add((Prisoner) constructor.newInstance());
+                prisoners.add(factory.get());
+            }
+        }
+    }
+
+    /**
+     * Gives every prisoner without an id of this simulation one of the free ids. Prisoners that already have an id
+     * keep it, so the ids stay dense (0 up to the population size) and a prisoner keeps its id for its whole life.
+     * Everything remembered about the previous holder of a recycled id is forgotten, and its scores are overwritten.
+     */
+    private void assignPrisonerIds() {
+        int size = prisoners.size();
+        if (idTaken.length != size) {
+            idTaken = new boolean[size];
+            keepsId = new boolean[size];
+        } else {
+            Arrays.fill(idTaken, false);
+        }
+        // a new board (such as after restoring a snapshot) needs every prisoner, not only those without an id
+        boolean newBoard = scoreBoard == null || scoreBoard.getCapacity() != size;
+        if (newBoard) {
+            // the prisoners of the old board keep their ids, only their scores move to the new board
+            ScoreBoard oldBoard = scoreBoard;
+            scoreBoard = new ScoreBoard(size);
+            if (opponentMemory != null && opponentMemory.getCapacity() < size)
+                opponentMemory = new OpponentMemory(size);
+            scoreBoard.setOpponentMemory(opponentMemory);
+            if (pairStore != null)
+                pairStore = new PairPayoffStore(size);
+            for (Prisoner prisoner : prisoners) {
+                int id = prisoner.getPrisonerId();
+                if (id >= 0 && id < size && (oldBoard == null || prisoner.isOn(oldBoard))) {
+                    requireMemory(prisoner);
+                    prisoner.assignId(id, scoreBoard);
+                }
             }
         }
+
+        // prisoners that are not on the board of this simulation (or share an id) get a free id
+        boolean complete = true;
+        for (int i = 0; i < size; i++) {
+            Prisoner prisoner = prisoners.get(i);
+            int id = prisoner.getPrisonerId();
+            keepsId[i] = prisoner.isOn(scoreBoard) && id < size && !idTaken[id];
+            if (keepsId[i])
+                idTaken[id] = true;
+            else
+                complete = false;
+        }
+        if (complete)
+            return;
+
+        int free = 0;
+        for (int i = 0; i < size; i++) {
+            if (keepsId[i])
+                continue;
+            while (idTaken[free])
+                free++;
+            idTaken[free] = true;
+
+            if (opponentMemory != null)
+                opponentMemory.forget(free);
+            if (pairStore != null)
+                pairStore.evict(free);
+            Prisoner prisoner = prisoners.get(i);
+            requireMemory(prisoner);
+            prisoner.assignId(free, scoreBoard);
+        }
+    }
+
+    /**
+     * Creates the opponent memory when the first prisoner that uses it joins the simulation.
+     */
+    private void requireMemory(Prisoner prisoner) {
+        if (opponentMemory == null && prisoner.usesOpponentMemory()) {
+            opponentMemory = new OpponentMemory(Math.max(prisoners.size(), numPrisoners));
+            scoreBoard.setOpponentMemory(opponentMemory);
+        }
+    }
+
+    /**
+     * Adds a strategy to the strategies of this simulation, growing the arrays indexed by strategy id if needed.
+     * @param id the id of the strategy
+     */
+    private void addStrategy(int id) {
+        if (id >= populationCounts.length) {
+            int length = Math.max(id + 1, StrategyRegistry.getNumIds());
+            populationCounts = Arrays.copyOf(populationCounts, length);
+            meanFitness = Arrays.copyOf(meanFitness, length);
+        }
+        for (int known : strategyIds) {
+            if (known == id)
+                return;
+        }
+        strategyIds = Arrays.copyOf(strategyIds, strategyIds.length + 1);
+        strategyIds[strategyIds.length - 1] = id;
     }
 
 
@@ -125,7 +381,109 @@ public class Evolution {
      * @throws IllegalAccessException thrown when a failure occurs in the Prisoner.evolve() method
      */
     public void doGeneration() throws InstantiationException, IllegalAccessException {
-        // matches each prisoner against every other prisoner
+        // the phases are only timed when someone is listening
+        boolean measured = !listeners.isEmpty();
+        long start = measured ? System.nanoTime() : 0;
+        int size = prisoners.size();
+        // prisoners added through getPrisoners() have no id on the board of this simulation yet
+        assignPrisonerIds();
+        if (currentGeneration.length != size) {
+            currentGeneration = new Prisoner[size];
+            nextGeneration = new Prisoner[size];
+            fitness = new double[size];
+            gamesPlayed = new int[size];
+        }
+
+        // matches each prisoner against every other prisoner, or against the opponents chosen by the matching scheme
+        long roundsPlayed;
+        long gamesTotal;
+        if (matching != null) {
+            int[] games = matching.pair(size, r);
+            gamesTotal = games.length / 2;
+            roundsPlayed = playMatches(games);
+        } else {
+            gamesTotal = (long) size * (size - 1) / 2;
+            if (tournament != null)
+                roundsPlayed = tournament.play(prisoners, r.nextLong());
+            else
+                roundsPlayed = playRoundRobin();
+
+            // every prisoner has now played every reusable game, so all rows of the store are complete
+            if (pairStore != null && !(tournament instanceof ShardedTournament)) {
+                for (Prisoner prisoner : prisoners)
+                    pairStore.validate(prisoner.getPrisonerId());
+            }
+        }
+        long tournamentEnd = measured ? System.nanoTime() : 0;
+
+        // select the survivors and offspring into the next generation
+        prisoners.toArray(currentGeneration);
+        double totalScore = 0;
+        double maxScore = size > 0 ? Double.NEGATIVE_INFINITY : 0;
+        Arrays.fill(meanFitness, 0);
+        for (int i = 0; i < size; i++) {
+            fitness[i] = scoreBoard.getCumulativeScore(currentGeneration[i].getPrisonerId());
+            // with a matching scheme the number of games differs between prisoners, so the score per game is compared
+            if (matching != null)
+                fitness[i] = gamesPlayed[i] > 0 ? fitness[i] / gamesPlayed[i] : 0;
+            meanFitness[currentGeneration[i].getStrategyId()] += fitness[i];
+            if (measured) {
+                totalScore += fitness[i];
+                maxScore = Math.max(maxScore, fitness[i]);
+            }
+        }
+        // the counts still describe the scored generation
+        for (int id : strategyIds) {
+            if (populationCounts[id] > 0)
+                meanFitness[id] /= populationCounts[id];
+        }
+
+        if (numEmigrants > 0)
+            emigrants = offspringOfFittest(Math.min(numEmigrants, size));
+
+        int prisonersCreated = selection.select(currentGeneration, fitness, nextGeneration, r);
+
+        prisoners.clear();
+        prisoners.addAll(Arrays.asList(nextGeneration));
+        assignPrisonerIds();
+        // drop the references so the prisoners that did not survive can be collected
+        Arrays.fill(currentGeneration, null);
+        long selectionEnd = measured ? System.nanoTime() : 0;
+
+        // reset the population data
+        Arrays.fill(populationCounts, 0);
+
+        // notify prisoners that the generation has ended
+        // also update the population counts with the current population
+        scoreBoard.resetCumulativeScores();
+        for (Prisoner prisoner : prisoners) {
+            prisoner.notifyGenerationOver();
+
+            int id = prisoner.getStrategyId();
+            // evolve() may create a strategy that was not in the simulation yet
+            if (id >= populationCounts.length)
+                addStrategy(id);
+            populationCounts[id]++;
+        }
+
+        generation++;
+
+        if (measured) {
+            GenerationMetrics metrics = new GenerationMetrics(generation, tournamentEnd - start,
+                    selectionEnd - tournamentEnd, System.nanoTime() - selectionEnd, gamesTotal,
+                    roundsPlayed, prisonersCreated, size > 0 ? totalScore / size : 0, maxScore,
+                    Collections.unmodifiableMap(new HashMap<>(populationView)));
+            for (EvolutionListener listener : listeners)
+                listener.generationCompleted(metrics);
+        }
+    }
+
+    /**
+     * Plays every prisoner against every other prisoner on the calling thread.
+     * @return number of rounds played
+     */
+    private long playRoundRobin() {
+        long roundsPlayed = 0;
         for (int i = 0; i < prisoners.size(); i++) {
 
             Prisoner prisoner1 = prisoners.get(i);
@@ -139,39 +497,286 @@ public class Evolution {
                 if (randWeight)
                     weight = Double.MIN_VALUE + r.nextDouble();
 
+                int numTurns = r.nextInt(MAX_ROUNDS - MIN_ROUNDS) + MIN_ROUNDS;
+                long seed = InterrogationRoom.needsSeed(prisoner1, prisoner2, isNoisy()) ? r.nextLong() : 0;
+
+                // the random numbers are drawn either way, so incremental scoring does not change the simulation
+                if (usesPairStore(prisoner1, prisoner2)) {
+                    roundsPlayed += playStoredPairing(prisoner1, prisoner2);
+                    continue;
+                }
+
                 // starts a game between the two selected prisoners
-                InterrogationRoom game = new InterrogationRoom(r.nextInt(MAX_ROUNDS - MIN_ROUNDS) + MIN_ROUNDS,
-                        prisoner1, prisoner2, weight, this);
+                InterrogationRoom game = new InterrogationRoom(numTurns, prisoner1, prisoner2, weight, this, seed);
                 game.simulateGame();
+                roundsPlayed += numTurns;
             }
         }
-        // sort the list of prisoners by score in descending order
-        prisoners.sort((p1, p2) -> Double.compare(p2.getCumulativeScore(), p1.getCumulativeScore()));
+        return roundsPlayed;
+    }
+
+    /**
+     * @return true if the payoffs of a pairing of the round robin go through the store of the incremental scoring mode
+     */
+    boolean usesPairStore(Prisoner prisoner1, Prisoner prisoner2) {
+        return pairStore != null && InterrogationRoom.isReusable(prisoner1, prisoner2, isNoisy());
+    }
 
-        // kill the bottom half of the population
-        for (int i=numPrisoners/2; i<numPrisoners; i++) {
-            prisoners.remove(numPrisoners/2);
+    /**
+     * Plays a pairing of the round robin for which usesPairStore() holds, or adds the payoffs stored in an earlier
+     * generation to the scores. Each pairing is only written by its own game, so pairings may be played on multiple
+     * threads.
+     * @return number of rounds of the game, also counted when its stored payoffs were reused
+     */
+    int playStoredPairing(Prisoner prisoner1, Prisoner prisoner2) {
+        int id1 = prisoner1.getPrisonerId();
+        int id2 = prisoner2.getPrisonerId();
+        if (pairStore.contains(id1, id2)) {
+            // ends the game like a played game, as prisoners may count their games
+            prisoner1.updateScore(pairStore.get(id1, id2));
+            prisoner1.notifyGameOver();
+            prisoner1.resetGameScore();
+            prisoner2.updateScore(pairStore.get(id2, id1));
+            prisoner2.notifyGameOver();
+            prisoner2.resetGameScore();
+            return MIN_ROUNDS;
         }
-        // reproduce and evolve the remaining prisoners
-        for (int i=0; i<numPrisoners/2; i++) {
-            prisoners.add(prisoners.get(i).evolve());
+
+        // reusable games only depend on the rates of the noise, not on the errors drawn
+        InterrogationRoom game = new InterrogationRoom(MIN_ROUNDS, prisoner1, prisoner2, weight, this, 0);
+        pairStore.put(id1, id2, game.simulateReusableGame());
+        return MIN_ROUNDS;
+    }
+
+    /**
+     * Plays the games chosen by the matching scheme on the calling thread, counting the games of every prisoner.
+     * @param games the indices of the prisoners of every game, game g is played between [2g] and [2g + 1]
+     * @return number of rounds played
+     */
+    private long playMatches(int[] games) {
+        Arrays.fill(gamesPlayed, 0);
+        long roundsPlayed = 0;
+        for (int game = 0; game < games.length; game += 2) {
+            Prisoner prisoner1 = prisoners.get(games[game]);
+            Prisoner prisoner2 = prisoners.get(games[game + 1]);
+            gamesPlayed[games[game]]++;
+            gamesPlayed[games[game + 1]]++;
+
+            // if weight should be randomized, generate a value such that 0<weight<=1
+            if (randWeight)
+                weight = Double.MIN_VALUE + r.nextDouble();
+
+            int numTurns = r.nextInt(MAX_ROUNDS - MIN_ROUNDS) + MIN_ROUNDS;
+            long seed = InterrogationRoom.needsSeed(prisoner1, prisoner2, isNoisy()) ? r.nextLong() : 0;
+            new InterrogationRoom(numTurns, prisoner1, prisoner2, weight, this, seed).simulateGame();
+            roundsPlayed += numTurns;
         }
+        return roundsPlayed;
+    }
 
-        // reset the population data
-        for (String className : prisonerPopulations.keySet())
-            prisonerPopulations.replace(className, 0);
+    /**
+     * Creates offspring of the fittest prisoners of the scored generation.
+     * @param count number of prisoners to create offspring of
+     * @return the offspring, fittest first
+     * @throws InstantiationException thrown when a failure occurs in the Prisoner.evolve() method
+     * @throws IllegalAccessException thrown when a failure occurs in the Prisoner.evolve() method
+     */
+    private Prisoner[] offspringOfFittest(int count) throws InstantiationException, IllegalAccessException {
+        // insertion into a short sorted list, the number of emigrants is small compared to the population
+        int[] fittest = new int[count];
+        int found = 0;
+        for (int i = 0; i < currentGeneration.length; i++) {
+            if (found == count && fitness[i] <= fitness[fittest[count - 1]])
+                continue;
+            int position = found < count ? found++ : count - 1;
+            while (position > 0 && fitness[fittest[position - 1]] < fitness[i]) {
+                fittest[position] = fittest[position - 1];
+                position--;
+            }
+            fittest[position] = i;
+        }
 
-        // notify prisoners that the generation has ended
-        // also update the populations map with the current population
-        for (Prisoner prisoner : prisoners) {
-            prisoner.notifyGenerationOver();
-            prisoner.resetCumulativeScore();
+        Prisoner[] offspring = new Prisoner[count];
+        for (int i = 0; i < count; i++) {
+            Prisoner parent = currentGeneration[fittest[i]];
+            offspring[i] = SelectionOperator.offspring(parent, parent, r);
+        }
+        return offspring;
+    }
 
-            String className = prisoner.getClass().getSimpleName();
-            prisonerPopulations.replace(className, prisonerPopulations.get(className) + 1);
+    /**
+     * Sets the number of the fittest prisoners of each following generation to keep offspring of, so they can be
+     * sent to another population.
+     * @param count number of emigrants per generation, 0 for none
+     */
+    void setNumEmigrants(int count) {
+        numEmigrants = count;
+        emigrants = new Prisoner[0];
+    }
+
+    /**
+     * Getter for the emigrants.
+     * @return offspring of the fittest prisoners of the last generation, fittest first
+     */
+    Prisoner[] getEmigrants() {
+        return emigrants;
+    }
+
+    /**
+     * Moves prisoners from another population into this one, each replacing a prisoner chosen at random.
+     * @param immigrants the prisoners to add, which must not belong to another simulation anymore
+     */
+    void immigrate(Prisoner[] immigrants) {
+        for (Prisoner immigrant : immigrants) {
+            int replaced = r.nextInt(prisoners.size());
+            Prisoner leaving = prisoners.get(replaced);
+            populationCounts[leaving.getStrategyId()]--;
+            addStrategy(immigrant.getStrategyId());
+            populationCounts[immigrant.getStrategyId()]++;
+            prisoners.set(replaced, immigrant);
+
+            // the immigrant takes over the id, but nothing remembered about the prisoner it replaced
+            if (opponentMemory != null)
+                opponentMemory.forget(leaving.getPrisonerId());
+            if (pairStore != null)
+                pairStore.evict(leaving.getPrisonerId());
+            requireMemory(immigrant);
+            immigrant.assignId(leaving.getPrisonerId(), scoreBoard);
         }
+    }
 
-        generation++;
+    /**
+     * Getter for the current generation.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Registers a listener to receive the metrics of every following generation.
+     * @param listener the listener to add
+     */
+    public void addListener(EvolutionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops sending generation metrics to a listener.
+     * @param listener the listener to remove
+     */
+    public void removeListener(EvolutionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets the way the survivors and offspring are chosen at the end of each generation, truncation selection of the
+     * better half by default.
+     * @param selection the selection operator to use from the next generation on
+     */
+    public void setSelectionOperator(SelectionOperator selection) {
+        this.selection = selection;
+    }
+
+    /**
+     * Replaces the full round robin with a matching scheme that chooses fewer games, so that a generation costs time
+     * linear in the size of the population. The fitness of a prisoner then is its score per game played. The games
+     * chosen by a scheme are played on the calling thread, whatever the parallelism.
+     * @param matching the matching scheme to use from the next generation on, null for the full round robin
+     */
+    public void setMatchingScheme(MatchingScheme matching) {
+        this.matching = matching;
+    }
+
+    /**
+     * Makes the prisoners err (the 'trembling hand'): every move a prisoner makes is the opposite of the one it chose
+     * with the probability of an action error, and every move of the opponent a prisoner is told of is the opposite of
+     * the move made with the probability of a perception error. The payoffs follow the moves actually made. Games with
+     * noise are never cached, as no two of them are alike.
+     * @param actionError probability of an action error, between 0 and 1
+     * @param perceptionError probability of a perception error, between 0 and 1
+     */
+    public void setNoise(double actionError, double perceptionError) {
+        if (!(actionError >= 0 && actionError <= 1))
+            throw new IllegalArgumentException("The probability of an action error must be between 0 and 1: "
+                    + actionError);
+        if (!(perceptionError >= 0 && perceptionError <= 1))
+            throw new IllegalArgumentException("The probability of a perception error must be between 0 and 1: "
+                    + perceptionError);
+        this.actionNoise = actionError;
+        this.perceptionNoise = perceptionError;
+        // the expected payoffs of memory-one prisoners depend on the noise
+        if (pairStore != null)
+            pairStore.clear();
+    }
+
+    /**
+     * @return true if the prisoners make action or perception errors
+     */
+    boolean isNoisy() {
+        return actionNoise > 0 || perceptionNoise > 0;
+    }
+
+    /**
+     * Creates the errors of a single game.
+     * @param seed seed of the random stream of the game
+     * @return the noise of the game
+     */
+    GameNoise newNoise(long seed) {
+        return new GameNoise(actionNoise, perceptionNoise, seed);
+    }
+
+    /**
+     * Enables the incremental scoring mode. The payoffs of the reusable games of the round robin (between memory-one
+     * prisoners, or between deterministic prisoners without noise) are stored by prisoner id, and the games between
+     * prisoners that both survived are not played again. With the default truncation selection half of the
+     * population survives, so about a quarter of the games are reused, and more with selection operators that keep
+     * more prisoners. The store holds a payoff for every pair of prisoners, 8 * size^2 bytes. It is used by the round
+     * robin on the calling thread and by the multi-core tournament, but not by matching schemes or workers. The
+     * simulation and its metrics, rounds played included, are the same with or without the store, only faster.
+     * @param incremental true to store and reuse the payoffs of reusable games
+     * @throws IllegalStateException thrown when games differ in their number of rounds or weight, as their payoffs
+     *                               then change between generations
+     */
+    public void setIncrementalScoring(boolean incremental) {
+        if (incremental && (randWeight || MAX_ROUNDS - MIN_ROUNDS != 1))
+            throw new IllegalStateException("Incremental scoring needs a constant number of rounds and weight");
+        pairStore = incremental ? new PairPayoffStore(prisoners.size()) : null;
+    }
+
+    /**
+     * Enables the multi-core tournament mode. The games of each generation are split into rounds in which no prisoner
+     * plays twice, and the rounds are played on a fork-join pool. Every pairing gets its own random stream derived
+     * from the seed, so a seeded simulation produces the same populations whatever the number of threads (although not
+     * the same populations as the single threaded mode).
+     * @param threads number of threads to play the games on, 0 to play the games on the calling thread again
+     */
+    public void setParallelism(int threads) {
+        if (threads < 0)
+            throw new IllegalArgumentException("The number of threads cannot be negative: " + threads);
+
+        if (tournament != null)
+            tournament.shutdown();
+        tournament = threads > 0 ? new ParallelTournament(this, threads) : null;
+        parallelism = threads;
+    }
+
+    /**
+     * Enables the multi-process tournament mode. The games of each generation are split into blocks that are played
+     * by TournamentWorker processes, and only the scores come back to this simulation, which does the selection. A
+     * seeded simulation produces the same populations whatever the number of workers. The connections are not part of
+     * a snapshot: a restored simulation plays the blocks on the calling thread exactly like the workers would, so it
+     * continues on the same trajectory, until it is given workers again.
+     * @param workers addresses of the workers
+     * @param parts number of parts the population is split into, which gives parts * (parts + 1) / 2 blocks to
+     *              spread over the workers
+     * @throws IOException thrown when a worker cannot be reached
+     */
+    public void setWorkers(List<InetSocketAddress> workers, int parts) throws IOException {
+        ShardedTournament sharded = new ShardedTournament(this, workers, parts);
+        if (tournament != null)
+            tournament.shutdown();
+        tournament = sharded;
+        parallelism = 0;
     }
 
     /**
@@ -188,32 +793,117 @@ public class Evolution {
         System.out.println("Running evolutionary simulation with a weight of " + (randWeight? "random":weight) + " and " + numPrisoners + " prisoners.");
         System.out.println("Games will have between " + MIN_ROUNDS + " and " + MAX_ROUNDS + " rounds.");
 
-        System.out.println("The starting population is: " + prisonerPopulations);
+        System.out.println("The starting population is: " + getPopulation());
 
-        do {
+        // prints the population at the end of each generation
+        TextHistoryWriter history = new TextHistoryWriter(System.out);
+        addListener(history);
+        try {
+            do {
 
-            doGeneration();
+                doGeneration();
 
-            System.out.println("\nAt the conclusion of generation " + generation + ", the population is: " + prisonerPopulations);
+                if (!choice.equalsIgnoreCase("F")) {
+                    System.out.print("N for next or Q for quit, F to run until stopped: ");
+                    choice = s.nextLine();
+                }
 
-            if (!choice.equalsIgnoreCase("F")) {
-                System.out.print("N for next or Q for quit, F to run until stopped: ");
-                choice = s.nextLine();
-            }
-
-        } while(choice.equalsIgnoreCase("N") || choice.equalsIgnoreCase("F"));
+            } while(choice.equalsIgnoreCase("N") || choice.equalsIgnoreCase("F"));
+        } finally {
+            removeListener(history);
+        }
 
     }
 
     /**
      * Getter for prisoner population sizes.
+     * The map is an unmodifiable view of the population counters, so it follows the simulation from one generation to
+     * the next. Not safe to read while a generation runs on another thread, observers of an AsyncEvolutionRunner poll
+     * its snapshot instead.
+     */
+    public Map<String, Integer> getPopulation() {
+        return populationView;
+    }
+
+    /**
+     * Unmodifiable view of the population counters, by simple class name of the strategy.
+     */
+    private class PopulationView extends AbstractMap<String, Integer> {
+
+        @Override
+        public Integer get(Object key) {
+            int id = idOf(key);
+            return id >= 0 ? populationCounts[id] : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return idOf(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return strategyIds.length;
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Entry<String, Integer>>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    int[] ids = strategyIds;
+                    return new Iterator<Entry<String, Integer>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < ids.length;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (next >= ids.length)
+                                throw new NoSuchElementException();
+                            int id = ids[next++];
+                            return new SimpleImmutableEntry<>(StrategyRegistry.getStrategy(id).getSimpleName(),
+                                    populationCounts[id]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return strategyIds.length;
+                }
+            };
+        }
+
+        /**
+         * @return the strategy id of the strategy with the simple class name, -1 if it is not in the simulation
+         */
+        private int idOf(Object key) {
+            for (int id : strategyIds) {
+                if (StrategyRegistry.getStrategy(id).getSimpleName().equals(key))
+                    return id;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Getter for the mean fitness of each strategy in the last generation, the score per game with a matching scheme.
+     * The map is built from the fitness totals on every call.
      */
-    public HashMap getPopulation() {
-        return prisonerPopulations;
+    public HashMap<String, Double> getMeanFitness() {
+        HashMap<String, Double> means = new HashMap<>();
+        for (int id : strategyIds)
+            means.put(StrategyRegistry.getStrategy(id).getSimpleName(), meanFitness[id]);
+        return means;
     }
 
     /**
      * Getter for the prisoner data array.
+     * The list is the live population, which only the thread running the generations may use.
      */
     public ArrayList getPrisoners() {
         return prisoners;
@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * Receives the metrics of every generation an Evolution simulates.
+ * The phases of a generation are only timed while at least one listener is registered.
+ */
+public interface EvolutionListener {
+
+    /**
+     * Called on the simulation thread at the end of each generation.
+     * @param metrics the measurements of the generation that just ended
+     */
+    void generationCompleted(GenerationMetrics metrics);
+}
@@ -0,0 +1,121 @@
+package model;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener that accumulates the generation metrics of an Evolution and exposes them as a JMX MBean, so long runs can
+ * be watched live (for example with JConsole). The counters are only touched once per generation. The MBean stays
+ * registered until unregister() is called, which frees its name for another simulation.
+ */
+public class EvolutionMetrics implements EvolutionListener, EvolutionMetricsMBean {
+
+    /** The simulation being watched */
+    private final Evolution evo;
+    /** Name of the MBean */
+    private final ObjectName objectName;
+    private final LongAdder gamesPlayed = new LongAdder();
+    private final LongAdder roundsPlayed = new LongAdder();
+    private final LongAdder prisonersCreated = new LongAdder();
+    /** The metrics of the last completed generation, null before the first one */
+    private volatile GenerationMetrics last;
+
+    /**
+     * Creates the metrics of a simulation, starts listening to it and registers them with the platform MBean server
+     * under the name "model:type=Evolution,name=[name]".
+     * @param evo the simulation to watch
+     * @param name name distinguishing this simulation from others in the same JVM
+     * @return the registered metrics
+     * @throws JMException thrown when the MBean cannot be registered, for example because the name is already taken
+     */
+    public static EvolutionMetrics register(Evolution evo, String name) throws JMException {
+        EvolutionMetrics metrics = new EvolutionMetrics(evo,
+                new ObjectName("model:type=Evolution,name=" + ObjectName.quote(name)));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metrics.objectName);
+        evo.addListener(metrics);
+        return metrics;
+    }
+
+    /**
+     * @param evo the simulation to watch
+     * @param objectName name of the MBean
+     */
+    private EvolutionMetrics(Evolution evo, ObjectName objectName) {
+        this.evo = evo;
+        this.objectName = objectName;
+    }
+
+    /**
+     * Stops listening to the simulation and removes the MBean from the platform MBean server, so the name can be
+     * registered again. Calling it again has no effect.
+     * @throws JMException thrown when the MBean cannot be unregistered
+     */
+    public void unregister() throws JMException {
+        evo.removeListener(this);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName))
+            server.unregisterMBean(objectName);
+    }
+
+    @Override
+    public void generationCompleted(GenerationMetrics metrics) {
+        gamesPlayed.add(metrics.getGamesPlayed());
+        roundsPlayed.add(metrics.getRoundsPlayed());
+        prisonersCreated.add(metrics.getPrisonersCreated());
+        last = metrics;
+    }
+
+    @Override
+    public int getGeneration() {
+        GenerationMetrics metrics = last;
+        return metrics != null ? metrics.getGeneration() : 0;
+    }
+
+    @Override
+    public long getGamesPlayed() {
+        return gamesPlayed.sum();
+    }
+
+    @Override
+    public long getRoundsPlayed() {
+        return roundsPlayed.sum();
+    }
+
+    @Override
+    public long getPrisonersCreated() {
+        return prisonersCreated.sum();
+    }
+
+    @Override
+    public double getLastGenerationMillis() {
+        GenerationMetrics metrics = last;
+        return metrics != null ? metrics.getTotalNanos() / 1e6 : 0;
+    }
+
+    @Override
+    public double getLastTournamentMillis() {
+        GenerationMetrics metrics = last;
+        return metrics != null ? metrics.getTournamentNanos() / 1e6 : 0;
+    }
+
+    @Override
+    public double getLastSelectionMillis() {
+        GenerationMetrics metrics = last;
+        return metrics != null ? metrics.getSelectionNanos() / 1e6 : 0;
+    }
+
+    @Override
+    public double getLastBookkeepingMillis() {
+        GenerationMetrics metrics = last;
+        return metrics != null ? metrics.getBookkeepingNanos() / 1e6 : 0;
+    }
+
+    @Override
+    public double getRoundsPerSecond() {
+        GenerationMetrics metrics = last;
+        return metrics != null ? metrics.getRoundsPerSecond() : 0;
+    }
+}
@@ -0,0 +1,34 @@
+package model;
+
+/**
+ * JMX view of the metrics of a running Evolution.
+ */
+public interface EvolutionMetricsMBean {
+
+    /** @return the last completed generation */
+    int getGeneration();
+
+    /** @return games played since the metrics were registered */
+    long getGamesPlayed();
+
+    /** @return rounds played since the metrics were registered */
+    long getRoundsPlayed();
+
+    /** @return prisoners created since the metrics were registered */
+    long getPrisonersCreated();
+
+    /** @return wall time of the last generation in milliseconds */
+    double getLastGenerationMillis();
+
+    /** @return time the last generation spent playing games in milliseconds */
+    double getLastTournamentMillis();
+
+    /** @return time the last generation spent on selection in milliseconds */
+    double getLastSelectionMillis();
+
+    /** @return time the last generation spent on bookkeeping in milliseconds */
+    double getLastBookkeepingMillis();
+
+    /** @return rounds played per second during the games of the last generation */
+    double getRoundsPerSecond();
+}
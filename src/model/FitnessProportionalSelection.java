@@ -0,0 +1,94 @@
+package model;
+
+import Strategies.Prisoner;
+
+import java.util.Random;
+
+/**
+ * Every prisoner of the next generation is the offspring of a prisoner drawn with a probability proportional to its
+ * fitness (roulette wheel selection). The draws use Vose's alias method, so each one takes constant time after a
+ * linear time setup per generation. Negative fitness values are shifted so that the least fit prisoner has a weight
+ * of zero.
+ */
+public class FitnessProportionalSelection implements SelectionOperator {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Probability of keeping the drawn column of the alias table */
+    private transient double[] probability;
+    /** The prisoner each column of the alias table falls back on */
+    private transient int[] alias;
+    /** Work list of the columns while building the table */
+    private transient int[] worklist;
+
+    @Override
+    public int select(Prisoner[] population, double[] fitness, Prisoner[] next, Random r)
+            throws InstantiationException, IllegalAccessException {
+
+        int size = population.length;
+        buildAliasTable(fitness, size);
+
+        int previousParent = -1;
+        for (int i = 0; i < next.length; i++) {
+            int column = r.nextInt(size);
+            int parent = r.nextDouble() < probability[column] ? column : alias[column];
+            // the parent mates with the previously drawn parent
+            next[i] = SelectionOperator.offspring(population[parent],
+                    population[previousParent >= 0 ? previousParent : parent], r);
+            previousParent = parent;
+        }
+        return next.length;
+    }
+
+    /**
+     * Builds the alias table for the given fitness values.
+     */
+    private void buildAliasTable(double[] fitness, int size) {
+        if (probability == null || probability.length < size) {
+            probability = new double[size];
+            alias = new int[size];
+            worklist = new int[size];
+        }
+
+        double min = Double.POSITIVE_INFINITY;
+        double total = 0;
+        for (int i = 0; i < size; i++)
+            min = Math.min(min, fitness[i]);
+        double shift = min < 0 ? -min : 0;
+        for (int i = 0; i < size; i++)
+            total += fitness[i] + shift;
+
+        // scale the weights so that they average to one, every prisoner is equally likely if all weights are zero
+        int small = 0;
+        int large = size;
+        for (int i = 0; i < size; i++) {
+            probability[i] = total > 0 ? (fitness[i] + shift) * size / total : 1;
+            alias[i] = i;
+            // small columns are listed from the front of the work list, large ones from the back
+            if (probability[i] < 1)
+                worklist[small++] = i;
+            else
+                worklist[--large] = i;
+        }
+
+        // fill up each small column with part of a large column
+        int nextSmall = 0;
+        while (nextSmall < small && large < size) {
+            int less = worklist[nextSmall++];
+            int more = worklist[large];
+            alias[less] = more;
+            probability[more] += probability[less] - 1;
+            if (probability[more] < 1) {
+                // the large column became small, it moves over to the small side of the work list
+                large++;
+                worklist[small++] = more;
+            }
+        }
+
+        // whatever is left over is one up to rounding errors
+        while (nextSmall < small)
+            probability[worklist[nextSmall++]] = 1;
+        while (large < size)
+            probability[worklist[large++]] = 1;
+    }
+}
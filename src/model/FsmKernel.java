@@ -0,0 +1,178 @@
+package model;
+
+import Strategies.FsmTable;
+import Strategies.Prisoner;
+
+/**
+ * Plays games between finite state machine prisoners directly on their transition tables.
+ * Both states are kept in local variables and every round is a handful of array lookups, so the loop makes no calls
+ * on the prisoners at all. The rounds are weighted exactly like in InterrogationRoom.
+ * <p>
+ * The pair of states determines everything that follows, so once a pair of states repeats the game is stuck in a
+ * cycle. The rest of the game is then added in closed form: every pass through the cycle pays what the first pass
+ * paid, discounted by a further weight^(cycle length), which is a geometric series. A game of thousands of rounds
+ * therefore costs no more than the rounds until its first cycle.
+ */
+class FsmKernel {
+
+    /** Whether a strategy class is the class that returns its transition table, so it plays exactly like the table */
+    private static final ClassValue<Boolean> declaresTable = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("getFsmTable").getDeclaringClass() == type;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    /** Base payoff of a round, at 2 * encoded move of the player + encoded move of the opponent */
+    private final double[] payoffs = new double[4];
+
+    /**
+     * Create a kernel for the payoffs of a simulation.
+     * @param rules simulation supplying the payoffs
+     */
+    FsmKernel(Evolution rules) {
+        payoffs[2 * FsmTable.COMPLY + FsmTable.COMPLY] = rules.COMPLY_COMPLY;
+        payoffs[2 * FsmTable.COMPLY + FsmTable.EXPLOIT] = rules.COMPLY_EXPLOIT;
+        payoffs[2 * FsmTable.EXPLOIT + FsmTable.COMPLY] = rules.EXPLOIT_COMPLY;
+        payoffs[2 * FsmTable.EXPLOIT + FsmTable.EXPLOIT] = rules.EXPLOIT_EXPLOIT;
+    }
+
+    /**
+     * Gets the transition table to play a prisoner on. A subclass of a strategy with a table may override its moves,
+     * so the table is only used for prisoners of exactly the class that returns it.
+     * @param prisoner the prisoner
+     * @return the transition table of the prisoner, null if it has to be called every round
+     */
+    static FsmTable tableOf(Prisoner prisoner) {
+        return declaresTable.get(prisoner.getClass()) ? prisoner.getFsmTable() : null;
+    }
+
+    /**
+     * Plays a game between two transition tables, both starting in state 0.
+     * @param table1 transition table of the first prisoner
+     * @param table2 transition table of the second prisoner
+     * @param numTurns number of rounds in the game
+     * @param weight weight or 'discount parameter' for successive turns
+     * @param discounts powers of the weight by round (starting at weight^0), null to compute them with Math.pow
+     * @return the total payoffs to the first and second prisoner
+     */
+    double[] play(FsmTable table1, FsmTable table2, int numTurns, double weight, double[] discounts) {
+        int numStates2 = table2.getNumStates();
+        long numPairs = (long) table1.getNumStates() * numStates2;
+        // a pair of states can only repeat after all pairs have been visited, so longer games may end in a cycle
+        boolean detectCycles = numPairs < numTurns;
+
+        /* round (plus one) in which each pair of states was first seen, 0 if not seen yet */
+        int[] firstSeen = detectCycles ? new int[(int) numPairs] : null;
+        /* the scores at the start of each round, until a pair repeats */
+        double[] before1 = detectCycles ? new double[(int) numPairs] : null;
+        double[] before2 = detectCycles ? new double[(int) numPairs] : null;
+
+        int state1 = 0;
+        int state2 = 0;
+        double score1 = 0;
+        double score2 = 0;
+
+        for (int round = 0; round < numTurns; round++) {
+            if (detectCycles) {
+                int pair = state1 * numStates2 + state2;
+                if (firstSeen[pair] != 0) {
+                    int cycleStart = firstSeen[pair] - 1;
+                    return new double[] {
+                            fastForward(score1, before1, cycleStart, round, numTurns, weight),
+                            fastForward(score2, before2, cycleStart, round, numTurns, weight)};
+                }
+                firstSeen[pair] = round + 1;
+                before1[round] = score1;
+                before2[round] = score2;
+            }
+
+            double discountParam = discounts != null ? discounts[round] : Math.pow(weight, round);
+
+            int move1 = table1.move(state1);
+            int move2 = table2.move(state2);
+
+            score1 += payoffs[2 * move1 + move2] * discountParam;
+            score2 += payoffs[2 * move2 + move1] * discountParam;
+
+            state1 = table1.next(state1, move2);
+            state2 = table2.next(state2, move1);
+        }
+        return new double[] {score1, score2};
+    }
+
+    /**
+     * Plays a noisy game between two transition tables, both starting in state 0. The errors make the states random,
+     * so the game cannot be fast-forwarded and every round is played. The errors are drawn in the same order as in
+     * InterrogationRoom, so both play the same game for the same noise.
+     * @param table1 transition table of the first prisoner
+     * @param table2 transition table of the second prisoner
+     * @param numTurns number of rounds in the game
+     * @param weight weight or 'discount parameter' for successive turns
+     * @param discounts powers of the weight by round (starting at weight^0), null to compute them with Math.pow
+     * @param noise the errors of the game
+     * @return the total payoffs to the first and second prisoner
+     */
+    double[] playNoisy(FsmTable table1, FsmTable table2, int numTurns, double weight, double[] discounts,
+                       GameNoise noise) {
+        int state1 = 0;
+        int state2 = 0;
+        double score1 = 0;
+        double score2 = 0;
+
+        for (int round = 0; round < numTurns; round++) {
+            double discountParam = discounts != null ? discounts[round] : Math.pow(weight, round);
+
+            // the moves are encoded as 0 and 1, so an error flips the lowest bit
+            int move1 = table1.move(state1);
+            if (noise.actionError())
+                move1 ^= 1;
+            int move2 = table2.move(state2);
+            if (noise.actionError())
+                move2 ^= 1;
+
+            score1 += payoffs[2 * move1 + move2] * discountParam;
+            score2 += payoffs[2 * move2 + move1] * discountParam;
+
+            int seen2 = noise.perceptionError() ? move2 ^ 1 : move2;
+            int seen1 = noise.perceptionError() ? move1 ^ 1 : move1;
+            state1 = table1.next(state1, seen2);
+            state2 = table2.next(state2, seen1);
+        }
+        return new double[] {score1, score2};
+    }
+
+    /**
+     * Adds the payoff of the remaining rounds of a game that has entered a cycle.
+     * @param score score of the prisoner at the start of the current round
+     * @param before scores of the prisoner at the start of each round played so far
+     * @param cycleStart first round of the cycle
+     * @param round current round, in which the state of the cycle start is reached again
+     * @param numTurns number of rounds in the game
+     * @param weight weight or 'discount parameter' for successive turns
+     * @return the score of the prisoner at the end of the game
+     */
+    private static double fastForward(double score, double[] before, int cycleStart, int round, int numTurns,
+                                      double weight) {
+        int cycleLength = round - cycleStart;
+        int fullCycles = (numTurns - round) / cycleLength;
+        int leftover = (numTurns - round) % cycleLength;
+
+        // payoff of the first pass through the cycle, every later pass pays this times cycleWeight per pass
+        double cyclePayoff = score - before[cycleStart];
+        double cycleWeight = Math.pow(weight, cycleLength);
+        // cycleWeight + cycleWeight^2 + ... + cycleWeight^fullCycles
+        double series = cycleWeight == 1 ? fullCycles
+                : cycleWeight * (1 - Math.pow(cycleWeight, fullCycles)) / (1 - cycleWeight);
+        score += cyclePayoff * series;
+
+        // the game may end part way through a pass
+        if (leftover > 0)
+            score += (before[cycleStart + leftover] - before[cycleStart]) * Math.pow(cycleWeight, fullCycles + 1);
+        return score;
+    }
+}
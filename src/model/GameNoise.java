@@ -0,0 +1,75 @@
+package model;
+
+import java.util.SplittableRandom;
+
+/**
+ * The errors of a single noisy game: action errors flip the move a prisoner intended to make, perception errors flip
+ * the move a prisoner is told its opponent made. Every move and every observation is an independent chance of an
+ * error, but instead of drawing a random number for each of them, the noise draws the number of moves until the next
+ * error from the geometric distribution. With rare errors a game then costs a handful of random numbers in total,
+ * instead of four per round.
+ * <p>
+ * Each game has its own noise, drawing from a SplittableRandom seeded by the caller, so a seeded simulation makes the
+ * same errors whichever thread plays the game.
+ */
+final class GameNoise {
+
+    /** The random stream of the game */
+    private final SplittableRandom rand;
+    /** log(1 - probability of an action error) */
+    private final double logNoActionError;
+    /** log(1 - probability of a perception error) */
+    private final double logNoPerceptionError;
+    /** Number of moves until the next action error, counting the next move as 1 */
+    private long untilActionError;
+    /** Number of observations until the next perception error, counting the next observation as 1 */
+    private long untilPerceptionError;
+
+    /**
+     * Create the noise of a game.
+     * @param actionError probability that a move is flipped
+     * @param perceptionError probability that an observed move of the opponent is flipped
+     * @param seed seed of the random stream of the game
+     */
+    GameNoise(double actionError, double perceptionError, long seed) {
+        this.rand = new SplittableRandom(seed);
+        this.logNoActionError = Math.log(1 - actionError);
+        this.logNoPerceptionError = Math.log(1 - perceptionError);
+        this.untilActionError = gap(logNoActionError);
+        this.untilPerceptionError = gap(logNoPerceptionError);
+    }
+
+    /**
+     * Called once for every move made in the game.
+     * @return true if the move is flipped
+     */
+    boolean actionError() {
+        if (--untilActionError > 0)
+            return false;
+        untilActionError = gap(logNoActionError);
+        return true;
+    }
+
+    /**
+     * Called once for every move observed in the game.
+     * @return true if the observed move is flipped
+     */
+    boolean perceptionError() {
+        if (--untilPerceptionError > 0)
+            return false;
+        untilPerceptionError = gap(logNoPerceptionError);
+        return true;
+    }
+
+    /**
+     * Draws the number of trials up to and including the next error.
+     * @param logNoError log(1 - probability of an error)
+     * @return a geometrically distributed number of at least 1, Long.MAX_VALUE if errors never happen
+     */
+    private long gap(double logNoError) {
+        if (logNoError == 0)
+            return Long.MAX_VALUE;
+        // 1 - nextDouble() lies in (0, 1], so the logarithm is finite, and the cast saturates for very rare errors
+        return (long) (1 + Math.log(1 - rand.nextDouble()) / logNoError);
+    }
+}
@@ -0,0 +1,108 @@
+package model;
+
+import java.util.Map;
+
+/**
+ * Measurements of a single generation of an Evolution.
+ */
+public final class GenerationMetrics {
+
+    /** The generation these metrics belong to, counting from 1 */
+    private final int generation;
+    /** Wall time spent playing the games */
+    private final long tournamentNanos;
+    /** Wall time spent selecting the survivors and creating the offspring */
+    private final long selectionNanos;
+    /** Wall time spent notifying and resetting the prisoners and counting the population */
+    private final long bookkeepingNanos;
+    /** Number of games played */
+    private final long gamesPlayed;
+    /** Number of rounds played, counting the rounds of cached games as well */
+    private final long roundsPlayed;
+    /** Number of new prisoners created by the selection */
+    private final int prisonersCreated;
+    /** Mean score (per game with a matching scheme) of the prisoners at the end of the games */
+    private final double meanScore;
+    /** Highest score (per game with a matching scheme) of a prisoner at the end of the games */
+    private final double maxScore;
+    /** Number of prisoners of each strategy at the end of the generation */
+    private final Map<String, Integer> population;
+
+    GenerationMetrics(int generation, long tournamentNanos, long selectionNanos, long bookkeepingNanos,
+                      long gamesPlayed, long roundsPlayed, int prisonersCreated, double meanScore, double maxScore,
+                      Map<String, Integer> population) {
+        this.generation = generation;
+        this.tournamentNanos = tournamentNanos;
+        this.selectionNanos = selectionNanos;
+        this.bookkeepingNanos = bookkeepingNanos;
+        this.gamesPlayed = gamesPlayed;
+        this.roundsPlayed = roundsPlayed;
+        this.prisonersCreated = prisonersCreated;
+        this.meanScore = meanScore;
+        this.maxScore = maxScore;
+        this.population = population;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public long getTournamentNanos() {
+        return tournamentNanos;
+    }
+
+    public long getSelectionNanos() {
+        return selectionNanos;
+    }
+
+    public long getBookkeepingNanos() {
+        return bookkeepingNanos;
+    }
+
+    /**
+     * @return wall time of the whole generation in nanoseconds
+     */
+    public long getTotalNanos() {
+        return tournamentNanos + selectionNanos + bookkeepingNanos;
+    }
+
+    public long getGamesPlayed() {
+        return gamesPlayed;
+    }
+
+    public long getRoundsPlayed() {
+        return roundsPlayed;
+    }
+
+    /**
+     * @return rounds played per second of tournament time
+     */
+    public double getRoundsPerSecond() {
+        return tournamentNanos > 0 ? roundsPlayed * 1e9 / tournamentNanos : 0;
+    }
+
+    public int getPrisonersCreated() {
+        return prisonersCreated;
+    }
+
+    public double getMeanScore() {
+        return meanScore;
+    }
+
+    public double getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * @return read only mapping of strategy class names to the number of prisoners of that strategy
+     */
+    public Map<String, Integer> getPopulation() {
+        return population;
+    }
+
+    @Override
+    public String toString() {
+        return "Generation " + generation + ": " + gamesPlayed + " games, " + roundsPlayed + " rounds, "
+                + prisonersCreated + " prisoners created in " + getTotalNanos() / 1000000 + " ms";
+    }
+}
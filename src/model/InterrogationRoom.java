@@ -1,5 +1,7 @@
 package model;
 
+import Strategies.FsmTable;
+import Strategies.MemoryOnePrisoner;
 import Strategies.Prisoner;
 import model.Evolution;
 
@@ -19,14 +21,39 @@ class InterrogationRoom {
     private Prisoner prisoner2;
     /** Number of turns in this game */
     private int numTurns;
+    /** Powers of the weight by round shared by the simulation, null if they have to be computed for this game */
+    private final double[] discounts;
+    /** The errors made in this game, null for a game without noise */
+    private final GameNoise noise;
+    /** Seed of the random streams of this game */
+    private final long seed;
+    /** Transition table of the first prisoner, null if it has to be called every round */
+    private final FsmTable table1;
+    /** Transition table of the second prisoner, null if it has to be called every round */
+    private final FsmTable table2;
 
     /** Create an interrogation room to play out a game between two prisoners */
     InterrogationRoom(int numTurns, Prisoner prisoner1, Prisoner prisoner2, double weight, Evolution evo) {
+        this(numTurns, prisoner1, prisoner2, weight, evo, 0);
+    }
+
+    /**
+     * Create an interrogation room to play out a game between two prisoners, in which the errors of a noisy
+     * simulation and the choices of stochastic prisoners are drawn from random streams derived from the seed
+     */
+    InterrogationRoom(int numTurns, Prisoner prisoner1, Prisoner prisoner2, double weight, Evolution evo,
+                      long seed) {
+        this.noise = evo.isNoisy() ? evo.newNoise(seed) : null;
+        this.seed = seed;
         this.numTurns = numTurns;
         this.prisoner1 = prisoner1;
         this.prisoner2 = prisoner2;
         this.weight = weight;
         this.evo = evo;
+        this.table1 = FsmKernel.tableOf(prisoner1);
+        this.table2 = table1 != null ? FsmKernel.tableOf(prisoner2) : null;
+        this.discounts = evo.discounts != null && weight == evo.weight && numTurns <= evo.discounts.length
+                ? evo.discounts : null;
     }
 
     /**
@@ -34,17 +61,45 @@ class InterrogationRoom {
      */
      void simulateGame() {
 
+        // games between memory-one prisoners are evaluated exactly, paying the expected payoffs
+        if (prisoner1 instanceof MemoryOnePrisoner && prisoner2 instanceof MemoryOnePrisoner) {
+            finishGame(memoryOnePayoff());
+            return;
+        }
+
+        // games between deterministic prisoners are only played once per combination of classes, rounds and weight,
+        // unless errors make every game different
+        if (noise == null && evo.payoffCache != null && prisoner1.isDeterministic() && prisoner2.isDeterministic()) {
+            finishGame(deterministicPayoff());
+            return;
+        }
+
+        // games between finite state machines are played on their transition tables
+        if (table1 != null && table2 != null) {
+            finishGame(playTables());
+            return;
+        }
+
         // gives the prisoners a unique identifier for the opponent
-        prisoner1.notifyOtherPrisoner(prisoner2.hashCode());
-        prisoner2.notifyOtherPrisoner(prisoner1.hashCode());
+        prisoner1.notifyOtherPrisoner(identify(prisoner2));
+        prisoner2.notifyOtherPrisoner(identify(prisoner1));
+        // and stochastic prisoners their own random streams, unrelated to the stream of the noise
+        if (prisoner1.isStochastic())
+            prisoner1.notifyGameSeed(ParallelTournament.mix(seed + 1));
+        if (prisoner2.isStochastic())
+            prisoner2.notifyGameSeed(ParallelTournament.mix(seed + 2));
 
         for (int currRound = 1; currRound <= numTurns; currRound++) {
 
             // calculates the weight to apply to the scores this round
-            double discountParam = Math.pow(weight, currRound - 1);
+            double discountParam = discount(currRound);
 
             boolean prisoner1Choice = prisoner1.choose();
             boolean prisoner2Choice = prisoner2.choose();
+            if (noise != null) {
+                prisoner1Choice ^= noise.actionError();
+                prisoner2Choice ^= noise.actionError();
+            }
 
             // both prisoners exploit
             if (prisoner1Choice && prisoner2Choice) {
@@ -67,9 +122,14 @@ class InterrogationRoom {
                 prisoner2.updateScore(evo.COMPLY_COMPLY * discountParam);
             }
 
-            // notifies the prisoners of their opponent's choice
-            prisoner1.notifyOpponentChoice(prisoner2Choice);
-            prisoner2.notifyOpponentChoice(prisoner1Choice);
+            // notifies the prisoners of their opponent's choice, as far as they perceive it
+            if (noise != null) {
+                prisoner1.notifyOpponentChoice(prisoner2Choice ^ noise.perceptionError());
+                prisoner2.notifyOpponentChoice(prisoner1Choice ^ noise.perceptionError());
+            } else {
+                prisoner1.notifyOpponentChoice(prisoner2Choice);
+                prisoner2.notifyOpponentChoice(prisoner1Choice);
+            }
 
         }
         // notifies the prisoners that the game has ended
@@ -78,4 +138,153 @@ class InterrogationRoom {
         prisoner2.notifyGameOver();
         prisoner2.resetGameScore();
     }
+
+    /**
+     * Whether the payoffs of a game between two prisoners only depend on their classes, the number of rounds and the
+     * weight, so that they may be stored and reused instead of playing the game again.
+     * @param prisoner1 the first prisoner
+     * @param prisoner2 the second prisoner
+     * @param noisy true if the prisoners make errors
+     * @return true for two memory-one prisoners, or for two deterministic prisoners without noise
+     */
+    static boolean isReusable(Prisoner prisoner1, Prisoner prisoner2, boolean noisy) {
+        if (prisoner1 instanceof MemoryOnePrisoner && prisoner2 instanceof MemoryOnePrisoner)
+            return true;
+        return !noisy && prisoner1.isDeterministic() && prisoner2.isDeterministic();
+    }
+
+    /**
+     * Whether a game between two prisoners draws from the random streams of its seed, so the caller only has to draw
+     * a seed from its random source for such games.
+     * @param prisoner1 the first prisoner
+     * @param prisoner2 the second prisoner
+     * @param noisy true if the prisoners make errors
+     * @return true for a noisy game, or for a sampled game with a stochastic prisoner
+     */
+    static boolean needsSeed(Prisoner prisoner1, Prisoner prisoner2, boolean noisy) {
+        if (noisy)
+            return true;
+        if (prisoner1 instanceof MemoryOnePrisoner && prisoner2 instanceof MemoryOnePrisoner)
+            return false;
+        return prisoner1.isStochastic() || prisoner2.isStochastic();
+    }
+
+    /**
+     * Runs a game for which isReusable() holds.
+     * @return the payoffs added to the scores of the first and second prisoner
+     */
+    double[] simulateReusableGame() {
+        double[] payoff = prisoner1 instanceof MemoryOnePrisoner && prisoner2 instanceof MemoryOnePrisoner
+                ? memoryOnePayoff() : deterministicPayoff();
+        finishGame(payoff);
+        return payoff;
+    }
+
+    /**
+     * Evaluates the game between two memory-one prisoners exactly.
+     * @return the expected payoffs to the first and second prisoner
+     */
+    private double[] memoryOnePayoff() {
+        return evo.memoryOneKernel.play((MemoryOnePrisoner) prisoner1, (MemoryOnePrisoner) prisoner2, numTurns,
+                weight, discounts, noise != null ? evo.actionNoise : 0, noise != null ? evo.perceptionNoise : 0);
+    }
+
+    /**
+     * Plays a game between two deterministic prisoners, reusing the payoffs of an earlier identical game if possible.
+     * The payoffs are always added to the scores as one total per game, so a cached game scores exactly like the game
+     * that filled the cache.
+     * @return the payoffs to the first and second prisoner
+     */
+    private double[] deterministicPayoff() {
+        Class<?> class1 = prisoner1.getClass();
+        Class<?> class2 = prisoner2.getClass();
+
+        double[] payoff = evo.payoffCache != null ? evo.payoffCache.get(class1, class2, numTurns, weight) : null;
+        if (payoff == null) {
+            payoff = table1 != null && table2 != null ? playTables() : playRounds();
+            if (evo.payoffCache != null)
+                evo.payoffCache.put(class1, class2, numTurns, weight, payoff);
+        }
+        return payoff;
+    }
+
+    /**
+     * Adds the payoffs of a game played without the prisoners to their scores and ends the game.
+     * @param payoff the total payoffs to the first and second prisoner
+     */
+    private void finishGame(double[] payoff) {
+        prisoner1.updateScore(payoff[0]);
+        prisoner2.updateScore(payoff[1]);
+
+        // notifies the prisoners that the game has ended
+        prisoner1.notifyGameOver();
+        prisoner1.resetGameScore();
+        prisoner2.notifyGameOver();
+        prisoner2.resetGameScore();
+    }
+
+    /**
+     * Plays out the game on the transition tables of two finite state machine prisoners.
+     * @return the total payoffs to the first and second prisoner
+     */
+    private double[] playTables() {
+        if (noise != null) {
+            return evo.fsmKernel.playNoisy(table1, table2, numTurns, weight, discounts, noise);
+        }
+        return evo.fsmKernel.play(table1, table2, numTurns, weight, discounts);
+    }
+
+    /**
+     * Plays out the rounds of the game without updating the scores of the prisoners.
+     * @return the total payoffs to the first and second prisoner
+     */
+    private double[] playRounds() {
+        double score1 = 0;
+        double score2 = 0;
+
+        for (int currRound = 1; currRound <= numTurns; currRound++) {
+
+            // calculates the weight to apply to the scores this round
+            double discountParam = discount(currRound);
+
+            boolean prisoner1Choice = prisoner1.choose();
+            boolean prisoner2Choice = prisoner2.choose();
+
+            score1 += payoff(prisoner1Choice, prisoner2Choice) * discountParam;
+            score2 += payoff(prisoner2Choice, prisoner1Choice) * discountParam;
+
+            // notifies the prisoners of their opponent's choice
+            prisoner1.notifyOpponentChoice(prisoner2Choice);
+            prisoner2.notifyOpponentChoice(prisoner1Choice);
+        }
+        return new double[] {score1, score2};
+    }
+
+    /**
+     * @return the prisoner id of a prisoner, or its hash code if it does not belong to a simulation
+     */
+    private static int identify(Prisoner prisoner) {
+        return prisoner.getPrisonerId() >= 0 ? prisoner.getPrisonerId() : prisoner.hashCode();
+    }
+
+    /**
+     * Weight applied to the payoffs of a round.
+     * @param currRound the round, starting at 1
+     * @return weight^(currRound - 1)
+     */
+    private double discount(int currRound) {
+        return discounts != null ? discounts[currRound - 1] : Math.pow(weight, currRound - 1);
+    }
+
+    /**
+     * Base payoff of a single round.
+     * @param choice choice of the player being paid, true if exploit
+     * @param opponentChoice choice of the opposing player, true if exploit
+     * @return the payoff before weighting
+     */
+    private double payoff(boolean choice, boolean opponentChoice) {
+        if (choice)
+            return opponentChoice ? evo.EXPLOIT_EXPLOIT : evo.EXPLOIT_COMPLY;
+        return opponentChoice ? evo.COMPLY_EXPLOIT : evo.COMPLY_COMPLY;
+    }
 }
@@ -0,0 +1,139 @@
+package model;
+
+import Strategies.Prisoner;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs several independent populations (islands) side by side, each on its own thread, and regularly lets the fittest
+ * prisoners of every island migrate to the next one. The islands form a ring: at a migration the offspring of the
+ * fittest prisoners of island i are handed to island i + 1 over a lock-free queue, where they replace prisoners chosen
+ * at random. The islands share no mutable state between migrations and only wait for one another at a migration, so
+ * a seeded model produces the same populations whatever the timing of the threads.
+ */
+public class IslandModel {
+
+    /** The populations, in ring order */
+    private final List<Evolution> islands;
+    /** Number of generations between migrations */
+    private final int migrationInterval;
+    /** Number of prisoners each island sends to the next at a migration */
+    private final int migrants;
+    /** The queue of prisoners arriving at each island */
+    private final List<ConcurrentLinkedQueue<Prisoner[]>> arrivals = new ArrayList<>();
+    /** The current generation */
+    private int generation = 0;
+
+    /**
+     * Create an island model. The islands are owned by the model from now on and should not be used elsewhere
+     * while it runs.
+     * @param islands the populations, each migrating to the next and the last one to the first
+     * @param migrationInterval number of generations between migrations
+     * @param migrants number of the fittest prisoners each island sends to the next at a migration, 0 for isolated
+     *                 islands
+     */
+    public IslandModel(List<Evolution> islands, int migrationInterval, int migrants) {
+        if (islands.isEmpty())
+            throw new IllegalArgumentException("The model needs at least one island");
+        if (migrationInterval < 1)
+            throw new IllegalArgumentException("The migration interval must be at least one generation: "
+                    + migrationInterval);
+        for (Evolution island : islands) {
+            if (island.getPrisoners().size() < migrants)
+                throw new IllegalArgumentException("An island of " + island.getPrisoners().size()
+                        + " prisoners cannot send " + migrants + " migrants");
+        }
+
+        this.islands = new ArrayList<>(islands);
+        this.migrationInterval = migrationInterval;
+        this.migrants = migrants;
+        for (int i = 0; i < islands.size(); i++)
+            arrivals.add(new ConcurrentLinkedQueue<>());
+    }
+
+    /**
+     * Runs the given number of generations on every island, one thread per island.
+     * @param generations number of generations to simulate
+     * @throws InterruptedException thrown when interrupted while waiting for the islands
+     * @throws ExecutionException thrown when an island fails, the cause is the failure of the island
+     */
+    public void run(int generations) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(islands.size());
+        // only the migrations synchronize the islands, the barrier makes sure every island has sent its emigrants
+        CyclicBarrier migration = new CyclicBarrier(islands.size());
+
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < islands.size(); i++) {
+                int island = i;
+                running.add(pool.submit(() -> {
+                    try {
+                        runIsland(island, generations, migration);
+                    } catch (Exception e) {
+                        // the other islands would wait for this one at the next migration forever
+                        migration.reset();
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : running)
+                future.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        generation += generations;
+    }
+
+    /**
+     * Simulates the generations of a single island, on the thread of that island.
+     * @param island index of the island
+     * @param generations number of generations to simulate
+     * @param migration barrier every island waits at after sending its emigrants
+     */
+    private void runIsland(int island, int generations, CyclicBarrier migration)
+            throws InstantiationException, IllegalAccessException, InterruptedException, BrokenBarrierException {
+
+        Evolution evo = islands.get(island);
+        for (int i = 1; i <= generations; i++) {
+            boolean migrating = migrants > 0 && islands.size() > 1 && (generation + i) % migrationInterval == 0;
+
+            evo.setNumEmigrants(migrating ? migrants : 0);
+            evo.doGeneration();
+
+            if (migrating) {
+                arrivals.get((island + 1) % islands.size()).add(evo.getEmigrants());
+                migration.await();
+                evo.immigrate(arrivals.get(island).poll());
+            }
+        }
+        evo.setNumEmigrants(0);
+    }
+
+    /**
+     * Getter for the islands.
+     */
+    public List<Evolution> getIslands() {
+        return Collections.unmodifiableList(islands);
+    }
+
+    /**
+     * Getter for prisoner population sizes, added up over all islands.
+     */
+    public Map<String, Integer> getPopulation() {
+        HashMap<String, Integer> population = new HashMap<>();
+        for (Evolution island : islands) {
+            for (Map.Entry<String, Integer> strategy : island.getPopulation().entrySet())
+                population.merge(strategy.getKey(), strategy.getValue(), Integer::sum);
+        }
+        return population;
+    }
+
+    /**
+     * Getter for the current generation.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+}
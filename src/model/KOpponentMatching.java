@@ -0,0 +1,46 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Every prisoner challenges a fixed number of opponents drawn at random (with replacement) from the rest of the
+ * population. A prisoner also plays every prisoner that challenged it, so the number of games per prisoner varies
+ * around twice the number of opponents.
+ */
+public class KOpponentMatching implements MatchingScheme {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of opponents each prisoner challenges */
+    private final int opponents;
+
+    /**
+     * Create a k-opponent matching scheme.
+     * @param opponents number of opponents each prisoner challenges per generation
+     */
+    public KOpponentMatching(int opponents) {
+        if (opponents < 1)
+            throw new IllegalArgumentException("Every prisoner needs at least one opponent: " + opponents);
+        this.opponents = opponents;
+    }
+
+    @Override
+    public int[] pair(int size, Random r) {
+        if (size < 2)
+            return new int[0];
+
+        int[] games = new int[2 * size * opponents];
+        int game = 0;
+        for (int prisoner = 0; prisoner < size; prisoner++) {
+            for (int i = 0; i < opponents; i++) {
+                // draw from the other size - 1 prisoners by skipping over the challenger
+                int opponent = r.nextInt(size - 1);
+                if (opponent >= prisoner)
+                    opponent++;
+                games[game++] = prisoner;
+                games[game++] = opponent;
+            }
+        }
+        return games;
+    }
+}
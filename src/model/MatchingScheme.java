@@ -0,0 +1,21 @@
+package model;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Decides which prisoners play one another during a generation, in place of the full round robin.
+ * The fitness of each prisoner is then its score divided by the number of games it played, so prisoners that happened
+ * to play more games have no advantage. Schemes are serializable so they can be saved in a checkpoint together with
+ * the simulation.
+ */
+public interface MatchingScheme extends Serializable {
+
+    /**
+     * Chooses the games of a generation.
+     * @param size number of prisoners in the population
+     * @param r the random number generator of the simulation
+     * @return the indices of the prisoners of every game, game g is played between [2g] and [2g + 1]
+     */
+    int[] pair(int size, Random r);
+}
@@ -0,0 +1,210 @@
+package model;
+
+import Strategies.MemoryOnePrisoner;
+
+/**
+ * Evaluates games between memory-one prisoners exactly. The choices the two prisoners meant to make in a round
+ * determine the probabilities of everything in the next round, so the game is a Markov chain on the four pairs of
+ * intended choices. The expected payoff of a round follows from the distribution over the pairs, which one step of
+ * the chain carries to the next round.
+ * <p>
+ * Noise fits in the chain as well: an action error flips an intended choice with the probability of an action
+ * error, independently for both prisoners, and a prisoner sees the opposite of the intended choice of its opponent if
+ * exactly one of an action error of the opponent and its own perception error happened.
+ * <p>
+ * Many pairings are evaluated at once with the pairings in the innermost loop and every quantity in an array of its
+ * own, so the loop over the pairings is straight-line arithmetic on arrays that the JIT compiler can vectorize.
+ */
+class MemoryOneKernel {
+
+    /** Base payoff of a round, at 2 * choice of the player + choice of the opponent (1 if exploited) */
+    private final double[] payoffs = new double[4];
+
+    /**
+     * Create a kernel for the payoffs of a simulation.
+     * @param rules simulation supplying the payoffs
+     */
+    MemoryOneKernel(Evolution rules) {
+        payoffs[0] = rules.COMPLY_COMPLY;
+        payoffs[1] = rules.COMPLY_EXPLOIT;
+        payoffs[2] = rules.EXPLOIT_COMPLY;
+        payoffs[3] = rules.EXPLOIT_EXPLOIT;
+    }
+
+    /**
+     * Evaluates a single game, with the same arithmetic as a batch but in local variables, so a game played by the
+     * simulation allocates nothing but the result.
+     * @param prisoner1 the first prisoner
+     * @param prisoner2 the second prisoner
+     * @param numTurns number of rounds in the game
+     * @param weight weight or 'discount parameter' for successive turns
+     * @param discounts powers of the weight by round (starting at weight^0), null to compute them with Math.pow
+     * @param actionError probability that a choice is flipped
+     * @param perceptionError probability that an observed choice is flipped
+     * @return the expected total payoffs to the first and second prisoner
+     */
+    double[] play(MemoryOnePrisoner prisoner1, MemoryOnePrisoner prisoner2, int numTurns, double weight,
+                  double[] discounts, double actionError, double perceptionError) {
+        double seenFlipped = actionError * (1 - perceptionError) + (1 - actionError) * perceptionError;
+
+        // expected payoff of a round for each pair of intended choices (first prisoner's choice, then the second's)
+        double expected1cc = expected(0, 0, actionError);
+        double expected1ce = expected(0, 1, actionError);
+        double expected1ec = expected(1, 0, actionError);
+        double expected1ee = expected(1, 1, actionError);
+        double expected2cc = expected(0, 0, actionError);
+        double expected2ce = expected(1, 0, actionError);
+        double expected2ec = expected(0, 1, actionError);
+        double expected2ee = expected(1, 1, actionError);
+
+        // chance that each prisoner complies after each pair of intended choices
+        double comply1cc = comply(prisoner1, false, false, seenFlipped);
+        double comply1ce = comply(prisoner1, false, true, seenFlipped);
+        double comply1ec = comply(prisoner1, true, false, seenFlipped);
+        double comply1ee = comply(prisoner1, true, true, seenFlipped);
+        double comply2cc = comply(prisoner2, false, false, seenFlipped);
+        double comply2ce = comply(prisoner2, true, false, seenFlipped);
+        double comply2ec = comply(prisoner2, false, true, seenFlipped);
+        double comply2ee = comply(prisoner2, true, true, seenFlipped);
+
+        double initial1 = prisoner1.getInitialComply();
+        double initial2 = prisoner2.getInitialComply();
+        double cc = initial1 * initial2;
+        double ce = initial1 * (1 - initial2);
+        double ec = (1 - initial1) * initial2;
+        double ee = (1 - initial1) * (1 - initial2);
+        double payoff1 = 0;
+        double payoff2 = 0;
+
+        for (int round = 0; round < numTurns; round++) {
+            double discountParam = discounts != null ? discounts[round] : Math.pow(weight, round);
+            payoff1 += discountParam * (cc * expected1cc + ce * expected1ce + ec * expected1ec + ee * expected1ee);
+            payoff2 += discountParam * (cc * expected2cc + ce * expected2ce + ec * expected2ec + ee * expected2ee);
+
+            // chance of each pair of intended choices in the next round
+            double c1 = cc * comply1cc + ce * comply1ce + ec * comply1ec + ee * comply1ee;
+            double bothComply = cc * comply1cc * comply2cc + ce * comply1ce * comply2ce
+                    + ec * comply1ec * comply2ec + ee * comply1ee * comply2ee;
+            double c2 = cc * comply2cc + ce * comply2ce + ec * comply2ec + ee * comply2ee;
+            cc = bothComply;
+            ce = c1 - bothComply;
+            ec = c2 - bothComply;
+            ee = 1 - c1 - c2 + bothComply;
+        }
+        return new double[] {payoff1, payoff2};
+    }
+
+    /**
+     * @param move intended choice of the player being paid, 1 if exploit
+     * @param opponentMove intended choice of the opponent, 1 if exploit
+     * @param actionError probability that a choice is flipped
+     * @return the expected payoff of a round to the player, over the action errors of both prisoners
+     */
+    private double expected(int move, int opponentMove, double actionError) {
+        double expected = 0;
+        for (int flip = 0; flip < 2; flip++) {
+            for (int opponentFlip = 0; opponentFlip < 2; opponentFlip++) {
+                double chance = (flip == 1 ? actionError : 1 - actionError)
+                        * (opponentFlip == 1 ? actionError : 1 - actionError);
+                expected += chance * payoffs[2 * (move ^ flip) + (opponentMove ^ opponentFlip)];
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * @param prisoner the prisoner
+     * @param exploited true if the prisoner meant to exploit in the previous round
+     * @param opponentExploited true if the opponent meant to exploit in the previous round
+     * @param seenFlipped chance that the prisoner sees the opposite of what its opponent meant to do
+     * @return the chance that the prisoner complies in the next round
+     */
+    private static double comply(MemoryOnePrisoner prisoner, boolean exploited, boolean opponentExploited,
+                                 double seenFlipped) {
+        return (1 - seenFlipped) * prisoner.getComply(exploited, opponentExploited)
+                + seenFlipped * prisoner.getComply(exploited, !opponentExploited);
+    }
+
+    /**
+     * Evaluates a batch of pairings, averaging every pairing over a uniformly distributed number of rounds. A round is
+     * only played in the games that last longer, so the average is a single pass over the rounds of the longest game
+     * in which each round is weighted by the share of the games that play it.
+     * @param first the first prisoner of every pairing
+     * @param second the second prisoner of every pairing
+     * @param minTurns smallest number of rounds
+     * @param maxTurns one more than the largest number of rounds
+     * @param weight weight or 'discount parameter' for successive turns
+     * @param discounts powers of the weight by round (starting at weight^0), null to compute them with Math.pow
+     * @param actionError probability that a choice is flipped
+     * @param perceptionError probability that an observed choice is flipped
+     * @param payoffs1 receives the expected payoff of a game to the first prisoner of every pairing
+     * @param payoffs2 receives the expected payoff of a game to the second prisoner of every pairing
+     */
+    void evaluate(MemoryOnePrisoner[] first, MemoryOnePrisoner[] second, int minTurns, int maxTurns, double weight,
+                  double[] discounts, double actionError, double perceptionError, double[] payoffs1,
+                  double[] payoffs2) {
+        int count = first.length;
+        // chance that a prisoner sees the opposite of what its opponent meant to do
+        double seenFlipped = actionError * (1 - perceptionError) + (1 - actionError) * perceptionError;
+
+        // expected payoff of a round for each pair of intended choices (2 * first + second)
+        double[] expected1 = new double[4];
+        double[] expected2 = new double[4];
+        for (int state = 0; state < 4; state++) {
+            expected1[state] = expected(state >> 1, state & 1, actionError);
+            expected2[state] = expected(state & 1, state >> 1, actionError);
+        }
+
+        // chance that each prisoner complies after each pair of intended choices, and the chance of each pair
+        double[][] comply1 = new double[4][count];
+        double[][] comply2 = new double[4][count];
+        double[][] chance = new double[4][count];
+        for (int i = 0; i < count; i++) {
+            for (int state = 0; state < 4; state++) {
+                boolean exploited1 = (state >> 1) == 1;
+                boolean exploited2 = (state & 1) == 1;
+                comply1[state][i] = comply(first[i], exploited1, exploited2, seenFlipped);
+                comply2[state][i] = comply(second[i], exploited2, exploited1, seenFlipped);
+            }
+            double initial1 = first[i].getInitialComply();
+            double initial2 = second[i].getInitialComply();
+            chance[0][i] = initial1 * initial2;
+            chance[1][i] = initial1 * (1 - initial2);
+            chance[2][i] = (1 - initial1) * initial2;
+            chance[3][i] = (1 - initial1) * (1 - initial2);
+            payoffs1[i] = 0;
+            payoffs2[i] = 0;
+        }
+
+        int numGames = maxTurns - minTurns;
+        for (int round = 0; round < maxTurns - 1; round++) {
+            // the share of the games that last beyond this round
+            double share = (double) (maxTurns - Math.max(minTurns, round + 1)) / numGames;
+            double discountParam = (discounts != null ? discounts[round] : Math.pow(weight, round)) * share;
+            boolean last = round == maxTurns - 2;
+
+            for (int i = 0; i < count; i++) {
+                double cc = chance[0][i];
+                double ce = chance[1][i];
+                double ec = chance[2][i];
+                double ee = chance[3][i];
+                payoffs1[i] += discountParam
+                        * (cc * expected1[0] + ce * expected1[1] + ec * expected1[2] + ee * expected1[3]);
+                payoffs2[i] += discountParam
+                        * (cc * expected2[0] + ce * expected2[1] + ec * expected2[2] + ee * expected2[3]);
+                if (last)
+                    continue;
+
+                // chance of each pair of intended choices in the next round
+                double c1 = cc * comply1[0][i] + ce * comply1[1][i] + ec * comply1[2][i] + ee * comply1[3][i];
+                double bothComply = cc * comply1[0][i] * comply2[0][i] + ce * comply1[1][i] * comply2[1][i]
+                        + ec * comply1[2][i] * comply2[2][i] + ee * comply1[3][i] * comply2[3][i];
+                double c2 = cc * comply2[0][i] + ce * comply2[1][i] + ec * comply2[2][i] + ee * comply2[3][i];
+                chance[0][i] = bothComply;
+                chance[1][i] = c1 - bothComply;
+                chance[2][i] = c2 - bothComply;
+                chance[3][i] = 1 - c1 - c2 + bothComply;
+            }
+        }
+    }
+}
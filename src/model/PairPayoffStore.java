@@ -0,0 +1,85 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Stores the payoffs of every pairing of the round robin by prisoner id, for the incremental scoring mode. A prisoner
+ * that survives a generation plays the same games against the other survivors in the next generation, so if those
+ * games are reusable (see InterrogationRoom.isReusable()) their payoffs are taken from the store and only the games
+ * involving new prisoners are played.
+ * <p>
+ * The payoffs are kept in a square matrix, entry [a][b] being the payoff to prisoner a from its game against b. A row
+ * only counts once its prisoner took part in a complete round robin, and is evicted when its id is given to a new
+ * prisoner. Every pairing is written by the one game that plays it, so games on multiple threads may fill the store.
+ */
+class PairPayoffStore {
+
+    /** Number of prisoner ids */
+    private final int size;
+    /** The payoffs, row by row */
+    private final double[] payoffs;
+    /** Whether the row of each id holds the payoffs against every other valid id */
+    private final boolean[] valid;
+
+    /**
+     * Create an empty store.
+     * @param size number of prisoner ids
+     */
+    PairPayoffStore(int size) {
+        this.size = size;
+        this.payoffs = new double[Math.multiplyExact(size, size)];
+        this.valid = new boolean[size];
+    }
+
+    /**
+     * @param id1 id of the first prisoner
+     * @param id2 id of the second prisoner
+     * @return true if the payoffs of the pairing are stored
+     */
+    boolean contains(int id1, int id2) {
+        return valid[id1] && valid[id2];
+    }
+
+    /**
+     * @param id1 id of the first prisoner
+     * @param id2 id of the second prisoner
+     * @return the payoff to the first prisoner from its game against the second
+     */
+    double get(int id1, int id2) {
+        return payoffs[id1 * size + id2];
+    }
+
+    /**
+     * Stores the payoffs of a pairing, which only count once both rows are valid.
+     * @param id1 id of the first prisoner
+     * @param id2 id of the second prisoner
+     * @param payoff the payoffs to the first and second prisoner
+     */
+    void put(int id1, int id2, double[] payoff) {
+        payoffs[id1 * size + id2] = payoff[0];
+        payoffs[id2 * size + id1] = payoff[1];
+    }
+
+    /**
+     * Marks the row of a prisoner that has played the complete round robin as valid.
+     * @param id the prisoner id
+     */
+    void validate(int id) {
+        valid[id] = true;
+    }
+
+    /**
+     * Drops the row of an id that is given to a new prisoner.
+     * @param id the prisoner id
+     */
+    void evict(int id) {
+        valid[id] = false;
+    }
+
+    /**
+     * Drops every row, for when the payoffs of the games change.
+     */
+    void clear() {
+        Arrays.fill(valid, false);
+    }
+}
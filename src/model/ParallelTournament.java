@@ -0,0 +1,154 @@
+package model;
+
+import Strategies.Prisoner;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays the round robin of a generation on a fork-join pool.
+ * The pairings are split into conflict-free rounds with the circle method, so no prisoner is ever in two interrogation
+ * rooms at once. Every pairing draws its number of rounds and weight from its own random stream derived from the
+ * generation seed, which makes a seeded simulation play the same games whatever the number of threads.
+ */
+class ParallelTournament implements Tournament {
+
+    /** Number of games a single fork-join task plays before it stops splitting */
+    private static final int GAMES_PER_TASK = 64;
+
+    /** The model.Evolution class that is managing this tournament */
+    private final Evolution evo;
+    /** The pool the rounds are played on */
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a tournament for the given simulation.
+     * @param evo simulation supplying the payoffs, rounds and weight
+     * @param threads number of threads to play the games on
+     */
+    ParallelTournament(Evolution evo, int threads) {
+        this.evo = evo;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    @Override
+    public long play(List<Prisoner> prisoners, long generationSeed) {
+        int size = prisoners.size();
+        // the circle method needs an even number of slots, the extra slot of an odd population is a bye
+        int slots = size % 2 == 0 ? size : size + 1;
+
+        long roundsPlayed = 0;
+        for (int round = 0; round < slots - 1; round++)
+            roundsPlayed += pool.invoke(new RoundTask(prisoners, generationSeed, round, slots, 0, slots / 2));
+        return roundsPlayed;
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Plays a single pairing of the round robin.
+     * @param prisoners the population of the current generation
+     * @param generationSeed seed of the current generation
+     * @param a index of one prisoner
+     * @param b index of the other prisoner
+     * @return number of rounds in the game
+     */
+    private int playPairing(List<Prisoner> prisoners, long generationSeed, int a, int b) {
+        int first = Math.min(a, b);
+        int second = Math.max(a, b);
+        if (evo.usesPairStore(prisoners.get(first), prisoners.get(second)))
+            return evo.playStoredPairing(prisoners.get(first), prisoners.get(second));
+        return playPairing(evo, prisoners.get(first), prisoners.get(second), generationSeed, first, second,
+                prisoners.size());
+    }
+
+    /**
+     * Plays a single pairing of the round robin with the random stream of that pairing.
+     * @param evo simulation supplying the payoffs, rounds and weight
+     * @param prisoner1 the prisoner at the lower index
+     * @param prisoner2 the prisoner at the higher index
+     * @param generationSeed seed of the current generation
+     * @param first index of the first prisoner in the population
+     * @param second index of the second prisoner in the population
+     * @param size number of prisoners in the population
+     * @return number of rounds in the game
+     */
+    static int playPairing(Evolution evo, Prisoner prisoner1, Prisoner prisoner2, long generationSeed, int first,
+                           int second, int size) {
+        SplittableRandom rand = new SplittableRandom(mix(generationSeed + mix((long) first * size + second)));
+
+        int numTurns = rand.nextInt(evo.MAX_ROUNDS - evo.MIN_ROUNDS) + evo.MIN_ROUNDS;
+        // if weight should be randomized, generate a value such that 0<weight<=1
+        double weight = evo.randWeight ? Double.MIN_VALUE + rand.nextDouble() : evo.weight;
+
+        new InterrogationRoom(numTurns, prisoner1, prisoner2, weight, evo, rand.nextLong()).simulateGame();
+        return numTurns;
+    }
+
+    /**
+     * Scrambles the bits of a value (the SplitMix64 finalizer) so nearby pairings get unrelated random streams.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Plays a range of the pairings of one circle method round, splitting the range while it is large.
+     * The result is the number of rounds played.
+     */
+    @SuppressWarnings("serial")
+    private class RoundTask extends RecursiveTask<Long> {
+
+        private final List<Prisoner> prisoners;
+        private final long generationSeed;
+        private final int round;
+        private final int slots;
+        private final int from;
+        private final int to;
+
+        RoundTask(List<Prisoner> prisoners, long generationSeed, int round, int slots, int from, int to) {
+            this.prisoners = prisoners;
+            this.generationSeed = generationSeed;
+            this.round = round;
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                RoundTask firstHalf = new RoundTask(prisoners, generationSeed, round, slots, from, mid);
+                firstHalf.fork();
+                long roundsPlayed = new RoundTask(prisoners, generationSeed, round, slots, mid, to).compute();
+                return roundsPlayed + firstHalf.join();
+            }
+
+            // the last slot stays fixed while the others rotate one position each round
+            int rotating = slots - 1;
+            long roundsPlayed = 0;
+            for (int k = from; k < to; k++) {
+                int a, b;
+                if (k == 0) {
+                    a = round;
+                    b = rotating;
+                } else {
+                    a = (round + k) % rotating;
+                    b = (round - k + rotating) % rotating;
+                }
+                // a pairing with the bye slot means the prisoner sits this round out
+                if (a < prisoners.size() && b < prisoners.size())
+                    roundsPlayed += playPairing(prisoners, generationSeed, a, b);
+            }
+            return roundsPlayed;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs many independent simulations over a grid of payoffs, weights and round ranges. The runs share one JVM (and so
+ * one JIT warm-up) and are spread over a fixed pool of threads; every run is seeded from the sweep seed and its
+ * position in the grid, so a sweep is reproducible whatever the number of threads. The final population and timing
+ * of each run are streamed to a tab separated results file as soon as the run finishes.
+ */
+public class ParameterSweep {
+
+    /** The mapping giving the number of each prisoner strategy in every run */
+    private final HashMap<String, Integer> prisonerInitialization;
+    /** Number of generations simulated by every run */
+    private final int generations;
+    /** Seed that the seeds of the runs are derived from */
+    private final long seed;
+    private double[] exploitComply = {10};
+    private double[] complyExploit = {0};
+    private double[] complyComply = {7};
+    private double[] exploitExploit = {3};
+    /** The weights to try, null entries stand for a randomized weight */
+    private Double[] weights = {null};
+    /** The round ranges to try as {minRounds, maxRounds} pairs */
+    private int[][] rounds = {{1, 10}};
+    /** Number of generations of the warm-up run, 0 for none */
+    private int warmupGenerations = 0;
+
+    /**
+     * Create a sweep with the payoffs, weight and rounds of EvolutionTUI as the only grid point.
+     * @param prisonerInitialization mapping of prisoner strategy class names to the number of that strategy to be created
+     * @param generations number of generations to simulate in every run
+     * @param seed seed that the seeds of the runs are derived from
+     */
+    public ParameterSweep(HashMap<String, Integer> prisonerInitialization, int generations, long seed) {
+        this.prisonerInitialization = new HashMap<>(prisonerInitialization);
+        this.generations = generations;
+        this.seed = seed;
+    }
+
+    /**
+     * @param values the payoffs to try for a player that exploits while the other complies
+     */
+    public void setExploitComply(double... values) {
+        exploitComply = values.clone();
+    }
+
+    /**
+     * @param values the payoffs to try for a player that complies while the other exploits
+     */
+    public void setComplyExploit(double... values) {
+        complyExploit = values.clone();
+    }
+
+    /**
+     * @param values the payoffs to try if both players comply
+     */
+    public void setComplyComply(double... values) {
+        complyComply = values.clone();
+    }
+
+    /**
+     * @param values the payoffs to try if both players exploit
+     */
+    public void setExploitExploit(double... values) {
+        exploitExploit = values.clone();
+    }
+
+    /**
+     * @param values the weights to try, null for a randomized weight
+     */
+    public void setWeights(Double... values) {
+        weights = values.clone();
+    }
+
+    /**
+     * @param values the round ranges to try, each one a {minRounds, maxRounds} pair
+     */
+    public void setRounds(int[]... values) {
+        rounds = new int[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].length != 2 || values[i][1] <= values[i][0])
+                throw new IllegalArgumentException("Rounds must be given as {minRounds, maxRounds}, minRounds < maxRounds");
+            rounds[i] = values[i].clone();
+        }
+    }
+
+    /**
+     * Sets the length of a run that is simulated and discarded before the sweep, so the JIT has compiled the
+     * simulator before the first measured run.
+     * @param generations number of generations of the warm-up run, 0 for none
+     */
+    public void setWarmupGenerations(int generations) {
+        warmupGenerations = generations;
+    }
+
+    /**
+     * @return number of runs in the sweep
+     */
+    public int size() {
+        return exploitComply.length * complyExploit.length * complyComply.length * exploitExploit.length
+                * weights.length * rounds.length;
+    }
+
+    /**
+     * Runs every point of the grid.
+     * @param results the file to write the results to, replaced if it exists
+     * @param threads number of runs to simulate at the same time
+     * @throws IOException thrown when the results cannot be written
+     * @throws InterruptedException thrown when interrupted while waiting for the runs
+     * @throws ExecutionException thrown when a run fails, the cause is the failure of the run
+     */
+    public void run(Path results, int threads) throws IOException, InterruptedException, ExecutionException {
+        if (warmupGenerations > 0) {
+            try {
+                new Run(0, warmupGenerations).call();
+            } catch (ReflectiveOperationException e) {
+                throw new ExecutionException(e);
+            }
+        }
+
+        String[] strategies = new TreeSet<>(prisonerInitialization.keySet()).toArray(new String[0]);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (BufferedWriter out = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+            out.write("run\tseed\texploit_comply\tcomply_exploit\tcomply_comply\texploit_exploit\tweight\tmin_rounds"
+                    + "\tmax_rounds\tgenerations\tmillis");
+            for (String strategy : strategies)
+                out.write("\t" + strategy);
+            out.newLine();
+
+            CompletionService<Run> completed = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < size(); i++)
+                completed.submit(new Run(i, generations));
+
+            // results are written in the order the runs finish
+            for (int i = 0; i < size(); i++) {
+                Run run = completed.take().get();
+                out.write(run.toString(strategies));
+                out.newLine();
+                out.flush();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * A single simulation of the sweep.
+     */
+    private class Run implements Callable<Run> {
+
+        private final int index;
+        private final int runGenerations;
+        private final int runSeed;
+        private final double exploitComplyValue;
+        private final double complyExploitValue;
+        private final double complyComplyValue;
+        private final double exploitExploitValue;
+        private final Double weight;
+        private final int minRounds;
+        private final int maxRounds;
+        private long millis;
+        private Map<?, ?> population;
+
+        /**
+         * Picks the grid point of a run, the last parameter varies fastest.
+         */
+        Run(int index, int runGenerations) {
+            this.index = index;
+            this.runGenerations = runGenerations;
+            this.runSeed = (int) ParallelTournament.mix(seed + ParallelTournament.mix(index));
+
+            int rest = index;
+            int[] roundRange = rounds[rest % rounds.length];
+            rest /= rounds.length;
+            minRounds = roundRange[0];
+            maxRounds = roundRange[1];
+            weight = weights[rest % weights.length];
+            rest /= weights.length;
+            exploitExploitValue = exploitExploit[rest % exploitExploit.length];
+            rest /= exploitExploit.length;
+            complyComplyValue = complyComply[rest % complyComply.length];
+            rest /= complyComply.length;
+            complyExploitValue = complyExploit[rest % complyExploit.length];
+            rest /= complyExploit.length;
+            exploitComplyValue = exploitComply[rest % exploitComply.length];
+        }
+
+        @Override
+        public Run call() throws ReflectiveOperationException {
+            long start = System.nanoTime();
+            Evolution evo = new Evolution(prisonerInitialization, maxRounds, minRounds, runSeed, weight,
+                    exploitComplyValue, complyExploitValue, complyComplyValue, exploitExploitValue);
+            for (int i = 0; i < runGenerations; i++)
+                evo.doGeneration();
+
+            millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            population = new HashMap<>(evo.getPopulation());
+            return this;
+        }
+
+        /**
+         * Formats the result of the run as a line of the results file.
+         * @param strategies the strategy of each population column
+         */
+        String toString(String[] strategies) {
+            StringBuilder line = new StringBuilder();
+            line.append(index).append('\t').append(runSeed).append('\t').append(exploitComplyValue).append('\t')
+                    .append(complyExploitValue).append('\t').append(complyComplyValue).append('\t')
+                    .append(exploitExploitValue).append('\t').append(weight != null ? weight : "random").append('\t')
+                    .append(minRounds).append('\t').append(maxRounds).append('\t').append(runGenerations).append('\t')
+                    .append(millis);
+            for (String strategy : strategies) {
+                Object count = population.get(strategy);
+                line.append('\t').append(count != null ? count : 0);
+            }
+            return line.toString();
+        }
+    }
+}
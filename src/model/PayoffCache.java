@@ -0,0 +1,79 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes the payoffs of games between prisoners that declared themselves deterministic.
+ * The result of such a game depends only on the two strategy classes, the number of rounds and the weight, so the
+ * rounds are played once per combination and every later game just adds the stored payoffs to both scores.
+ */
+class PayoffCache {
+
+    /** Payoff pairs (first prisoner, second prisoner) of the games played so far */
+    private final ConcurrentHashMap<Key, double[]> payoffs = new ConcurrentHashMap<>();
+
+    /**
+     * Looks up the payoffs of a game.
+     * @param first class of the first prisoner
+     * @param second class of the second prisoner
+     * @param numTurns number of rounds in the game
+     * @param weight weight used to calculate the payoffs
+     * @return the payoffs to the first and second prisoner, null if this game has not been played yet
+     */
+    double[] get(Class<?> first, Class<?> second, int numTurns, double weight) {
+        return payoffs.get(new Key(first, second, numTurns, weight));
+    }
+
+    /**
+     * Stores the payoffs of a game.
+     * @param first class of the first prisoner
+     * @param second class of the second prisoner
+     * @param numTurns number of rounds in the game
+     * @param weight weight used to calculate the payoffs
+     * @param payoff the payoffs to the first and second prisoner
+     */
+    void put(Class<?> first, Class<?> second, int numTurns, double weight, double[] payoff) {
+        payoffs.putIfAbsent(new Key(first, second, numTurns, weight), payoff);
+    }
+
+    /**
+     * @return number of distinct games stored
+     */
+    int size() {
+        return payoffs.size();
+    }
+
+    /**
+     * The parameters that fully determine the result of a deterministic game.
+     */
+    private static final class Key {
+
+        private final Class<?> first;
+        private final Class<?> second;
+        private final int numTurns;
+        private final long weightBits;
+
+        Key(Class<?> first, Class<?> second, int numTurns, double weight) {
+            this.first = first;
+            this.second = second;
+            this.numTurns = numTurns;
+            this.weightBits = Double.doubleToLongBits(weight);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return first == other.first && second == other.second && numTurns == other.numTurns
+                    && weightBits == other.weightBits;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 31 * first.hashCode() + second.hashCode();
+            hash = 31 * hash + numTurns;
+            return 31 * hash + Long.hashCode(weightBits);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import Strategies.MemoryOnePrisoner;
+import Strategies.Prisoner;
+import Strategies.ScoreBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Strategy by strategy table of the expected payoff of a single game, averaged over every possible number of rounds.
+ * Entry [a][b] is the payoff to a prisoner of strategy a that plays a prisoner of strategy b.
+ * <p>
+ * Pairings of two memory-one strategies are evaluated exactly by the MemoryOneKernel, all in one batch unless the
+ * weight is randomized.
+ */
+class PayoffMatrix {
+
+    private PayoffMatrix() {}
+
+    /**
+     * Plays every pairing of strategies once for each possible number of rounds.
+     * @param strategies factories of the strategies, null entries are skipped
+     * @param rules simulation supplying the payoffs, rounds and weight
+     * @param r random number generator used when the weight is randomized (one weight per pairing), and for the
+     *          games of stochastic strategies
+     * @return the expected payoff matrix
+     */
+    static double[][] build(List<Supplier<Prisoner>> strategies, Evolution rules, Random r) {
+
+        int numStrategies = strategies.size();
+        double[][] matrix = new double[numStrategies][numStrategies];
+        int numGames = rules.MAX_ROUNDS - rules.MIN_ROUNDS;
+        List<MemoryOnePrisoner> batch1 = new ArrayList<>();
+        List<MemoryOnePrisoner> batch2 = new ArrayList<>();
+        List<int[]> batchCells = new ArrayList<>();
+        // the prisoners of every pairing keep their scores on the same board, each new pairing overwrites them
+        ScoreBoard board = new ScoreBoard(2);
+
+        for (int a = 0; a < numStrategies; a++) {
+            if (strategies.get(a) == null)
+                continue;
+
+            // the game is symmetric, so every unordered pairing only has to be played once
+            for (int b = a; b < numStrategies; b++) {
+                if (strategies.get(b) == null)
+                    continue;
+
+                Prisoner prisoner1 = strategies.get(a).get();
+                Prisoner prisoner2 = strategies.get(b).get();
+                prisoner1.assignId(0, board);
+                prisoner2.assignId(1, board);
+                // if weight should be randomized, generate a value such that 0<weight<=1
+                double weight = rules.randWeight ? Double.MIN_VALUE + r.nextDouble() : rules.weight;
+
+                if (prisoner1 instanceof MemoryOnePrisoner && prisoner2 instanceof MemoryOnePrisoner) {
+                    if (rules.randWeight) {
+                        evaluate(rules, weight, matrix, new MemoryOnePrisoner[] {(MemoryOnePrisoner) prisoner1},
+                                new MemoryOnePrisoner[] {(MemoryOnePrisoner) prisoner2}, new int[][] {{a, b}});
+                    } else {
+                        batch1.add((MemoryOnePrisoner) prisoner1);
+                        batch2.add((MemoryOnePrisoner) prisoner2);
+                        batchCells.add(new int[] {a, b});
+                    }
+                    continue;
+                }
+
+                boolean stochastic = prisoner1.isStochastic() || prisoner2.isStochastic();
+                for (int numTurns = rules.MIN_ROUNDS; numTurns < rules.MAX_ROUNDS; numTurns++) {
+                    new InterrogationRoom(numTurns, prisoner1, prisoner2, weight, rules,
+                            stochastic ? r.nextLong() : 0).simulateGame();
+                }
+
+                matrix[a][b] = prisoner1.getCumulativeScore() / numGames;
+                matrix[b][a] = prisoner2.getCumulativeScore() / numGames;
+            }
+        }
+
+        if (!batchCells.isEmpty()) {
+            evaluate(rules, rules.weight, matrix, batch1.toArray(new MemoryOnePrisoner[0]),
+                    batch2.toArray(new MemoryOnePrisoner[0]), batchCells.toArray(new int[0][]));
+        }
+        return matrix;
+    }
+
+    /**
+     * Evaluates pairings of memory-one strategies over every possible number of rounds.
+     * @param rules simulation supplying the payoffs and rounds
+     * @param weight weight or 'discount parameter' for successive turns
+     * @param matrix the payoff matrix to fill in
+     * @param first prisoner of the row strategy of every pairing
+     * @param second prisoner of the column strategy of every pairing
+     * @param cells row and column of every pairing
+     */
+    private static void evaluate(Evolution rules, double weight, double[][] matrix, MemoryOnePrisoner[] first,
+                                 MemoryOnePrisoner[] second, int[][] cells) {
+        double[] payoffs1 = new double[first.length];
+        double[] payoffs2 = new double[first.length];
+        double[] discounts = weight == rules.weight ? rules.discounts : null;
+        rules.memoryOneKernel.evaluate(first, second, rules.MIN_ROUNDS, rules.MAX_ROUNDS, weight, discounts, 0, 0,
+                payoffs1, payoffs2);
+        for (int i = 0; i < cells.length; i++) {
+            matrix[cells[i][0]][cells[i][1]] = payoffs1[i];
+            matrix[cells[i][1]][cells[i][0]] = payoffs2[i];
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads a population history written by PopulationHistoryWriter. Only the blocks holding the requested generations
+ * are read, so a slice of a long history or a pass over all of it never loads the whole file.
+ */
+public class PopulationHistoryReader implements Closeable {
+
+    /** The file being read */
+    private final FileChannel channel;
+    /** The strategy of each count column */
+    private final String[] strategies;
+    /** Size of the header in bytes */
+    private final long headerSize;
+    /** Size of a block in bytes */
+    private final int blockSize;
+    /** Number of generations in the file */
+    private final long size;
+
+    /**
+     * Open a history file.
+     * @param file the file to read
+     * @throws IOException thrown when the file cannot be read or is not a population history
+     */
+    public PopulationHistoryReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        ByteBuffer fixed = readFully(0, 4 * Integer.BYTES);
+        if (fixed.getInt() != PopulationHistoryWriter.MAGIC)
+            throw new IOException(file + " is not a population history");
+        if (fixed.getInt() != PopulationHistoryWriter.VERSION || fixed.getInt() != PopulationHistoryWriter.BLOCK_CAPACITY)
+            throw new IOException(file + " was written in an unsupported format");
+
+        strategies = new String[fixed.getInt()];
+        long position = 4 * Integer.BYTES;
+        for (int i = 0; i < strategies.length; i++) {
+            int length = readFully(position, Integer.BYTES).getInt();
+            strategies[i] = new String(readFully(position + Integer.BYTES, length).array(), StandardCharsets.UTF_8);
+            position += Integer.BYTES + length;
+        }
+        headerSize = position;
+        blockSize = PopulationHistoryWriter.blockSize(strategies.length);
+
+        long blocks = (channel.size() - headerSize) / blockSize;
+        if (blocks == 0)
+            size = 0;
+        else
+            size = (blocks - 1) * PopulationHistoryWriter.BLOCK_CAPACITY
+                    + readFully(headerSize + (blocks - 1) * blockSize + Integer.BYTES, Integer.BYTES).getInt();
+    }
+
+    /**
+     * @return the strategy class names, in the order of the count columns
+     */
+    public String[] getStrategies() {
+        return strategies.clone();
+    }
+
+    /**
+     * @return number of generations in the history
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Reads a range of generations.
+     * @param from index of the first generation in the history to read
+     * @param count maximum number of generations to read
+     * @return the generations, fewer than requested if the history ends first
+     * @throws IOException thrown when the file cannot be read
+     */
+    public Slice read(long from, int count) throws IOException {
+        int length = (int) Math.max(0, Math.min(count, size - from));
+        Slice slice = new Slice(strategies.length, length);
+
+        int filled = 0;
+        while (filled < length) {
+            long index = from + filled;
+            long blockIndex = index / PopulationHistoryWriter.BLOCK_CAPACITY;
+            int row = (int) (index % PopulationHistoryWriter.BLOCK_CAPACITY);
+            int rows = Math.min(length - filled, PopulationHistoryWriter.BLOCK_CAPACITY - row);
+            copyBlock(readFully(headerSize + blockIndex * blockSize, blockSize), row, rows, slice, filled);
+            filled += rows;
+        }
+        return slice;
+    }
+
+    /**
+     * Streams the whole history one block of generations at a time.
+     * @param action receives consecutive slices of the history
+     * @throws IOException thrown when the file cannot be read
+     */
+    public void forEach(Consumer<Slice> action) throws IOException {
+        for (long from = 0; from < size; from += PopulationHistoryWriter.BLOCK_CAPACITY)
+            action.accept(read(from, PopulationHistoryWriter.BLOCK_CAPACITY));
+    }
+
+    /**
+     * Copies rows of a block into a slice.
+     */
+    private void copyBlock(ByteBuffer block, int row, int rows, Slice slice, int offset) {
+        int firstGeneration = block.getInt(0);
+        int numStrategies = strategies.length;
+        for (int i = 0; i < rows; i++) {
+            slice.generations[offset + i] = firstGeneration + row + i;
+            for (int s = 0; s < numStrategies; s++) {
+                slice.counts[s][offset + i] = block.getInt(PopulationHistoryWriter.columnOffset(s, numStrategies)
+                        + (row + i) * Integer.BYTES);
+            }
+            slice.meanScores[offset + i] = block.getDouble(
+                    PopulationHistoryWriter.columnOffset(numStrategies, numStrategies) + (row + i) * Double.BYTES);
+            slice.maxScores[offset + i] = block.getDouble(
+                    PopulationHistoryWriter.columnOffset(numStrategies + 1, numStrategies) + (row + i) * Double.BYTES);
+        }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of the population history");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A range of consecutive generations of the history, stored by column.
+     */
+    public static final class Slice {
+
+        /** The generation number of each row */
+        public final int[] generations;
+        /** The prisoner counts, indexed by strategy (in the order of getStrategies()) and then row */
+        public final int[][] counts;
+        /** The mean score of each row */
+        public final double[] meanScores;
+        /** The max score of each row */
+        public final double[] maxScores;
+
+        Slice(int numStrategies, int length) {
+            generations = new int[length];
+            counts = new int[numStrategies][length];
+            meanScores = new double[length];
+            maxScores = new double[length];
+        }
+
+        /**
+         * @return number of generations in this slice
+         */
+        public int size() {
+            return generations.length;
+        }
+    }
+}
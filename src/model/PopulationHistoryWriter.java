@@ -0,0 +1,155 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Listener that appends the population and scores of every generation to a compact binary file, to be read back with
+ * PopulationHistoryReader.
+ * <p>
+ * The file starts with a header naming the strategies, followed by fixed size blocks of BLOCK_CAPACITY generations.
+ * Each block is stored by column: the first generation and number of generations in the block, one int column of
+ * prisoner counts per strategy, then the mean score and max score columns. The block being filled is kept in a buffer
+ * and written in place through a FileChannel whenever it is full or the history is flushed.
+ */
+public class PopulationHistoryWriter implements EvolutionListener, Closeable {
+
+    /** Marks the start of a population history file */
+    static final int MAGIC = 0x50445048;
+    /** Version of the file format */
+    static final int VERSION = 1;
+    /** Number of generations stored in each block */
+    static final int BLOCK_CAPACITY = 1024;
+
+    /** The file being written */
+    private final FileChannel channel;
+    /** The strategy of each count column */
+    private final String[] strategies;
+    /** Size of the header in bytes */
+    private final long headerSize;
+    /** The block currently being filled */
+    private final ByteBuffer block;
+    /** Index of the block currently being filled */
+    private long blockIndex = 0;
+    /** Number of generations in the block currently being filled */
+    private int rows = 0;
+
+    /**
+     * Create a history file, replacing any existing file.
+     * @param file the file to write
+     * @param strategies strategy class names to record the counts of, for example the keys of Evolution.getPopulation()
+     * @throws IOException thrown when the file cannot be created
+     */
+    public PopulationHistoryWriter(Path file, Collection<String> strategies) throws IOException {
+        this.strategies = strategies.toArray(new String[0]);
+        Arrays.sort(this.strategies);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        byte[][] names = new byte[this.strategies.length][];
+        int size = 4 * Integer.BYTES;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.strategies[i].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + names[i].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(size);
+        header.putInt(MAGIC).putInt(VERSION).putInt(BLOCK_CAPACITY).putInt(names.length);
+        for (byte[] name : names)
+            header.putInt(name.length).put(name);
+        header.flip();
+        while (header.hasRemaining())
+            channel.write(header);
+
+        this.headerSize = size;
+        this.block = ByteBuffer.allocateDirect(blockSize(names.length));
+    }
+
+    /**
+     * Size of a block in bytes.
+     * @param numStrategies number of strategies in the file
+     */
+    static int blockSize(int numStrategies) {
+        return 2 * Integer.BYTES + BLOCK_CAPACITY * (numStrategies * Integer.BYTES + 2 * Double.BYTES);
+    }
+
+    /**
+     * Offset of a column within a block.
+     * @param column strategy index, numStrategies for the mean scores, numStrategies + 1 for the max scores
+     * @param numStrategies number of strategies in the file
+     */
+    static int columnOffset(int column, int numStrategies) {
+        int offset = 2 * Integer.BYTES + Math.min(column, numStrategies) * BLOCK_CAPACITY * Integer.BYTES;
+        if (column > numStrategies)
+            offset += BLOCK_CAPACITY * Double.BYTES;
+        return offset;
+    }
+
+    @Override
+    public void generationCompleted(GenerationMetrics metrics) {
+        try {
+            append(metrics);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the population and scores of a generation.
+     * @param metrics the metrics of the generation
+     * @throws IOException thrown when a full block cannot be written
+     */
+    public void append(GenerationMetrics metrics) throws IOException {
+        if (rows == 0)
+            block.putInt(0, metrics.getGeneration());
+
+        for (int i = 0; i < strategies.length; i++) {
+            Integer count = metrics.getPopulation().get(strategies[i]);
+            block.putInt(columnOffset(i, strategies.length) + rows * Integer.BYTES, count != null ? count : 0);
+        }
+        block.putDouble(columnOffset(strategies.length, strategies.length) + rows * Double.BYTES,
+                metrics.getMeanScore());
+        block.putDouble(columnOffset(strategies.length + 1, strategies.length) + rows * Double.BYTES,
+                metrics.getMaxScore());
+        rows++;
+
+        if (rows == BLOCK_CAPACITY) {
+            flush();
+            blockIndex++;
+            rows = 0;
+        }
+    }
+
+    /**
+     * Writes the generations appended so far to the file.
+     * @throws IOException thrown when the block cannot be written
+     */
+    public void flush() throws IOException {
+        if (rows == 0)
+            return;
+        block.putInt(Integer.BYTES, rows);
+
+        ByteBuffer out = block.duplicate();
+        out.clear();
+        long position = headerSize + blockIndex * out.capacity();
+        while (out.hasRemaining())
+            position += channel.write(out, position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * The population is split into random pairs a fixed number of times per generation, and each pair plays one game.
+ * Every prisoner plays once per pairing, except for the prisoner left over in an odd population.
+ */
+public class RandomPairingMatching implements MatchingScheme {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of times the population is paired up per generation */
+    private final int pairings;
+
+    /**
+     * Create a random pairing matching scheme.
+     * @param pairings number of times the population is paired up per generation
+     */
+    public RandomPairingMatching(int pairings) {
+        if (pairings < 1)
+            throw new IllegalArgumentException("The population has to be paired up at least once: " + pairings);
+        this.pairings = pairings;
+    }
+
+    @Override
+    public int[] pair(int size, Random r) {
+        int[] games = new int[pairings * (size / 2) * 2];
+        int game = 0;
+        for (int i = 0; i < pairings; i++) {
+            int[] order = shuffledIndices(size, r);
+            for (int position = 0; position + 1 < size; position += 2) {
+                games[game++] = order[position];
+                games[game++] = order[position + 1];
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Fisher-Yates shuffle of the indices of a population.
+     * @param size number of prisoners in the population
+     * @param r the random number generator of the simulation
+     * @return the indices 0 to size - 1 in random order
+     */
+    static int[] shuffledIndices(int size, Random r) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++)
+            indices[i] = i;
+        for (int i = size - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            int swap = indices[i];
+            indices[i] = indices[j];
+            indices[j] = swap;
+        }
+        return indices;
+    }
+}
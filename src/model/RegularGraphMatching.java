@@ -0,0 +1,51 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * The prisoners play along the edges of a random regular graph, so every prisoner plays the same number of distinct
+ * opponents. The graph is a circulant graph (each position joined to its nearest positions on a ring, and to the
+ * opposite position for an odd degree) laid over a random permutation of the population, drawn anew every generation.
+ */
+public class RegularGraphMatching implements MatchingScheme {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of games every prisoner plays */
+    private final int degree;
+
+    /**
+     * Create a random regular graph matching scheme.
+     * @param degree number of games every prisoner plays per generation, an odd degree needs an even population
+     */
+    public RegularGraphMatching(int degree) {
+        if (degree < 1)
+            throw new IllegalArgumentException("Every prisoner needs at least one opponent: " + degree);
+        this.degree = degree;
+    }
+
+    @Override
+    public int[] pair(int size, Random r) {
+        if (degree >= size)
+            throw new IllegalStateException("A population of " + size + " cannot form a graph of degree " + degree);
+        if (degree % 2 == 1 && size % 2 == 1)
+            throw new IllegalStateException("A graph of odd degree " + degree + " needs an even population: " + size);
+
+        int[] ring = RandomPairingMatching.shuffledIndices(size, r);
+        int[] games = new int[size * degree];
+        int game = 0;
+        for (int position = 0; position < size; position++) {
+            for (int distance = 1; distance <= degree / 2; distance++) {
+                games[game++] = ring[position];
+                games[game++] = ring[(position + distance) % size];
+            }
+        }
+        if (degree % 2 == 1) {
+            for (int position = 0; position < size / 2; position++) {
+                games[game++] = ring[position];
+                games[game++] = ring[position + size / 2];
+            }
+        }
+        return games;
+    }
+}
@@ -0,0 +1,41 @@
+package model;
+
+import Strategies.Prisoner;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Decides which prisoners of a scored generation survive and reproduce into the next generation.
+ * Operators are serializable so they can be saved in a checkpoint together with the simulation.
+ */
+public interface SelectionOperator extends Serializable {
+
+    /**
+     * Builds the next generation from the scored prisoners of the current one.
+     * @param population prisoners of the current generation, the operator may reorder them
+     * @param fitness fitness of each prisoner in the population, reordered together with the population
+     * @param next array to fill with the prisoners of the next generation, the same length as the population
+     * @param r the random number generator of the simulation
+     * @return number of new prisoners created for the next generation
+     * @throws InstantiationException thrown when a failure occurs in the Prisoner.evolve() method
+     * @throws IllegalAccessException thrown when a failure occurs in the Prisoner.evolve() method
+     */
+    int select(Prisoner[] population, double[] fitness, Prisoner[] next, Random r)
+            throws InstantiationException, IllegalAccessException;
+
+    /**
+     * Creates an offspring of a parent. Only a parent with a genome draws the seed of the offspring's random stream
+     * from the random number generator, so other strategies evolve exactly as they did without genomes.
+     * @param parent the prisoner to create an offspring of
+     * @param mate another parent chosen by the selection, possibly the parent itself
+     * @param r the random number generator of the simulation
+     * @return the offspring
+     * @throws InstantiationException thrown when a failure occurs in the Prisoner.evolve() method
+     * @throws IllegalAccessException thrown when a failure occurs in the Prisoner.evolve() method
+     */
+    static Prisoner offspring(Prisoner parent, Prisoner mate, Random r)
+            throws InstantiationException, IllegalAccessException {
+        return parent.hasGenome() ? parent.evolve(mate, r.nextLong()) : parent.evolve(mate);
+    }
+}
@@ -0,0 +1,409 @@
+package model;
+
+import Strategies.MemoryOnePrisoner;
+import Strategies.Prisoner;
+import Strategies.ScoreBoard;
+import Strategies.StrategyRegistry;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Plays the round robin of a generation on worker processes (see TournamentWorker) connected over TCP.
+ * The population is split into a number of equal parts, and every pair of parts (including a part with itself) forms a
+ * block of pairings. Each worker receives the strategy of every prisoner once per generation, then plays the blocks
+ * it takes from a shared queue and returns the score each prisoner earned in the block. The coordinator adds the
+ * scores to its own prisoners in block order, so a seeded simulation produces the same populations whatever the
+ * number of workers. Every pairing uses the same random stream as in ParallelTournament, but the scores are added up
+ * in a different order, so the populations are not exactly those of the multi-core mode.
+ * <p>
+ * The workers play fresh prisoners of the same classes, so only the class of a prisoner travels to the workers.
+ * Strategies must therefore not depend on anything their constructor does not recreate, such as earlier generations.
+ * A generation is rejected with an IllegalStateException if it holds a prisoner with a genome of its own
+ * (Prisoner.hasGenome()), a prisoner remembering its opponents across games (Prisoner.usesOpponentMemory()), or a
+ * stochastic prisoner whose games are sampled round by round rather than evaluated exactly, that is a stochastic
+ * prisoner alongside prisoners that are not memory-one prisoners.
+ * <p>
+ * A tournament without workers plays the blocks on the calling thread exactly like the workers would, which is how a
+ * simulation restored from a snapshot of a sharded run continues on the same trajectory.
+ * <p>
+ * The protocol is a stream of big-endian primitives (DataOutputStream). The session starts with MAGIC, VERSION and
+ * the rules: maxRounds, minRounds, randWeight, weight, the four payoffs and the probabilities of action and perception
+ * errors. Every message then starts with its type:
+ * <ul>
+ *     <li>GENERATION: seed, the number of classes and their names, the population size and a short class index per
+ *     prisoner</li>
+ *     <li>BLOCK: block index and the from/to indices of both parts, answered with the block index, the rounds played
+ *     and the score of every prisoner of the first part, followed by the second part if it is a different part</li>
+ *     <li>CLOSE: ends the session</li>
+ * </ul>
+ */
+class ShardedTournament implements Tournament {
+
+    /** First int of a session, "PDWT" */
+    static final int MAGIC = 0x50445754;
+    /** Version of the protocol */
+    static final int VERSION = 2;
+    /** Message type of a new population */
+    static final byte GENERATION = 1;
+    /** Message type of a block of pairings to play */
+    static final byte BLOCK = 2;
+    /** Message type ending the session */
+    static final byte CLOSE = 3;
+
+    /** Simulation supplying the payoffs, rounds and weight to the blocks played without workers */
+    private final Evolution evo;
+    /** The connections to the workers, empty if the blocks are played on the calling thread */
+    private final List<Connection> connections = new ArrayList<>();
+    /** Number of parts the population is split into */
+    private final int parts;
+    /** Talks to the workers, one thread per connection, null without workers */
+    private final ExecutorService pool;
+
+    /**
+     * Connect to the workers.
+     * @param evo simulation supplying the payoffs, rounds and weight
+     * @param workers addresses of the workers
+     * @param parts number of parts the population is split into, giving parts * (parts + 1) / 2 blocks
+     * @throws IOException thrown when a worker cannot be reached
+     */
+    ShardedTournament(Evolution evo, List<InetSocketAddress> workers, int parts) throws IOException {
+        if (workers.isEmpty())
+            throw new IllegalArgumentException("The tournament needs at least one worker");
+        if (parts < 1)
+            throw new IllegalArgumentException("The population needs at least one part: " + parts);
+
+        this.evo = evo;
+        this.parts = parts;
+        try {
+            for (InetSocketAddress worker : workers)
+                connections.add(new Connection(evo, worker));
+        } catch (IOException e) {
+            for (Connection connection : connections)
+                connection.close();
+            throw e;
+        }
+        this.pool = Executors.newFixedThreadPool(workers.size(), runnable -> {
+            Thread thread = new Thread(runnable, "tournament-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create a tournament that plays the blocks on the calling thread, like the workers would.
+     * @param evo simulation supplying the payoffs, rounds and weight
+     * @param parts number of parts the population is split into, giving parts * (parts + 1) / 2 blocks
+     */
+    ShardedTournament(Evolution evo, int parts) {
+        if (parts < 1)
+            throw new IllegalArgumentException("The population needs at least one part: " + parts);
+        this.evo = evo;
+        this.parts = parts;
+        this.pool = null;
+    }
+
+    /**
+     * Getter for the number of parts the population is split into.
+     */
+    int getParts() {
+        return parts;
+    }
+
+    @Override
+    public long play(List<Prisoner> prisoners, long generationSeed) {
+        int size = prisoners.size();
+        checkShardable(prisoners);
+
+        // the classes of the population, indexed in order of appearance
+        Map<Class<?>, Integer> classIndex = new LinkedHashMap<>();
+        short[] population = new short[size];
+        for (int i = 0; i < size; i++) {
+            Integer index = classIndex.get(prisoners.get(i).getClass());
+            if (index == null) {
+                index = classIndex.size();
+                if (index > Short.MAX_VALUE)
+                    throw new IllegalStateException("Too many strategy classes for a sharded tournament");
+                classIndex.put(prisoners.get(i).getClass(), index);
+            }
+            population[i] = (short) (int) index;
+        }
+        List<String> classNames = new ArrayList<>();
+        for (Class<?> strategy : classIndex.keySet())
+            classNames.add(strategy.getName());
+
+        int[] bounds = new int[parts + 1];
+        for (int part = 0; part <= parts; part++)
+            bounds[part] = (int) ((long) part * size / parts);
+
+        List<int[]> blocks = new ArrayList<>();
+        for (int first = 0; first < parts; first++)
+            for (int second = first; second < parts; second++)
+                blocks.add(new int[] {bounds[first], bounds[first + 1], bounds[second], bounds[second + 1]});
+
+        BlockResult[] results = new BlockResult[blocks.size()];
+        if (connections.isEmpty())
+            playLocally(classIndex.keySet(), population, blocks, generationSeed, results);
+        else
+            playOnWorkers(classNames, population, blocks, generationSeed, results);
+
+        // the scores are added in block order, so the sums do not depend on which worker played which block
+        long roundsPlayed = 0;
+        for (int block = 0; block < blocks.size(); block++) {
+            int[] range = blocks.get(block);
+            BlockResult result = results[block];
+            roundsPlayed += result.roundsPlayed;
+            addScores(prisoners, range[0], result.firstScores);
+            if (range[2] != range[0])
+                addScores(prisoners, range[2], result.secondScores);
+        }
+        return roundsPlayed;
+    }
+
+    /**
+     * Plays the blocks on the calling thread.
+     */
+    private void playLocally(Set<Class<?>> classes, short[] population, List<int[]> blocks, long generationSeed,
+                             BlockResult[] results) {
+        List<Supplier<Prisoner>> strategies = new ArrayList<>();
+        for (Class<?> strategy : classes) {
+            try {
+                strategies.add(StrategyRegistry.register(strategy.asSubclass(Prisoner.class)));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot recreate " + strategy.getName(), e);
+            }
+        }
+        for (int block = 0; block < blocks.size(); block++)
+            results[block] = playBlock(evo, generationSeed, strategies, population, blocks.get(block));
+    }
+
+    /**
+     * Sends the population to every worker and lets them take the blocks from a shared queue.
+     */
+    private void playOnWorkers(List<String> classNames, short[] population, List<int[]> blocks, long generationSeed,
+                               BlockResult[] results) {
+        ConcurrentLinkedQueue<Integer> queue = new ConcurrentLinkedQueue<>();
+        for (int block = 0; block < blocks.size(); block++)
+            queue.add(block);
+
+        List<Future<?>> running = new ArrayList<>();
+        for (Connection connection : connections) {
+            running.add(pool.submit(() -> {
+                connection.sendGeneration(generationSeed, classNames, population);
+                Integer block;
+                while ((block = queue.poll()) != null)
+                    results[block] = connection.playBlock(block, blocks.get(block));
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : running)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the workers", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw new UncheckedIOException((IOException) e.getCause());
+            throw new IllegalStateException("A worker failed", e.getCause());
+        }
+    }
+
+    /**
+     * Plays a block of pairings on fresh prisoners of the classes of the population, keeping their scores on a board
+     * of the block, the first part before the second.
+     * @param rules simulation supplying the payoffs, rounds and weight
+     * @param generationSeed seed that all pairing random streams of the generation are derived from
+     * @param strategies factories of the strategy classes, in the order of the class indices
+     * @param population class index of every prisoner of the generation
+     * @param range from/to indices of the first part and of the second part
+     * @return the rounds played and the score of every prisoner of the block
+     */
+    static BlockResult playBlock(Evolution rules, long generationSeed, List<Supplier<Prisoner>> strategies,
+                                 short[] population, int[] range) {
+        int firstFrom = range[0];
+        int firstTo = range[1];
+        int secondFrom = range[2];
+        int secondTo = range[3];
+        boolean samePart = secondFrom == firstFrom;
+        ScoreBoard board = new ScoreBoard(firstTo - firstFrom + (samePart ? 0 : secondTo - secondFrom));
+        Prisoner[] first = createPrisoners(strategies, population, firstFrom, firstTo, board, 0);
+        // a block of a part with itself plays the pairings within the part
+        Prisoner[] second = samePart ? first
+                : createPrisoners(strategies, population, secondFrom, secondTo, board, firstTo - firstFrom);
+
+        BlockResult result = new BlockResult();
+        for (int i = firstFrom; i < firstTo; i++) {
+            for (int j = Math.max(secondFrom, i + 1); j < secondTo; j++) {
+                result.roundsPlayed += ParallelTournament.playPairing(rules, first[i - firstFrom],
+                        second[j - secondFrom], generationSeed, i, j, population.length);
+            }
+        }
+        result.firstScores = scores(first);
+        if (!samePart)
+            result.secondScores = scores(second);
+        return result;
+    }
+
+    /**
+     * Creates the prisoners of a part of a block, with consecutive ids on the board of the block.
+     */
+    private static Prisoner[] createPrisoners(List<Supplier<Prisoner>> strategies, short[] population, int from,
+                                              int to, ScoreBoard board, int firstId) {
+        Prisoner[] prisoners = new Prisoner[to - from];
+        for (int i = from; i < to; i++) {
+            prisoners[i - from] = strategies.get(population[i]).get();
+            prisoners[i - from].assignId(firstId + i - from, board);
+        }
+        return prisoners;
+    }
+
+    /**
+     * @return the score of every prisoner of a part
+     */
+    private static double[] scores(Prisoner[] prisoners) {
+        double[] scores = new double[prisoners.length];
+        for (int i = 0; i < prisoners.length; i++)
+            scores[i] = prisoners[i].getCumulativeScore();
+        return scores;
+    }
+
+    /**
+     * Checks that the workers can recreate the behaviour of every prisoner from its class alone.
+     * @param prisoners the population of the generation
+     * @throws IllegalStateException thrown for a prisoner whose behaviour is not determined by its class
+     */
+    static void checkShardable(List<Prisoner> prisoners) {
+        boolean stochastic = false;
+        boolean sampled = false;
+        for (Prisoner prisoner : prisoners) {
+            if (prisoner.hasGenome())
+                throw new IllegalStateException(prisoner.getClass().getSimpleName()
+                        + " has a genome of its own and cannot play a sharded tournament");
+            if (prisoner.usesOpponentMemory())
+                throw new IllegalStateException(prisoner.getClass().getSimpleName()
+                        + " remembers its opponents and cannot play a sharded tournament");
+            stochastic |= prisoner.isStochastic();
+            sampled |= !(prisoner instanceof MemoryOnePrisoner);
+        }
+        if (stochastic && sampled)
+            throw new IllegalStateException(
+                    "Stochastic prisoners playing sampled games cannot play a sharded tournament");
+    }
+
+    /**
+     * Adds the scores of one part of a block to the prisoners.
+     */
+    private static void addScores(List<Prisoner> prisoners, int from, double[] scores) {
+        for (int i = 0; i < scores.length; i++) {
+            Prisoner prisoner = prisoners.get(from + i);
+            prisoner.updateScore(scores[i]);
+            prisoner.resetGameScore();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (pool != null)
+            pool.shutdownNow();
+        for (Connection connection : connections)
+            connection.close();
+    }
+
+    /**
+     * The scores a worker returned for a block.
+     */
+    static class BlockResult {
+        long roundsPlayed;
+        double[] firstScores;
+        double[] secondScores;
+    }
+
+    /**
+     * A session with a single worker.
+     */
+    private static class Connection {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        /**
+         * Connects to a worker and sends the rules of the simulation.
+         */
+        Connection(Evolution evo, InetSocketAddress worker) throws IOException {
+            socket = new Socket(worker.getAddress(), worker.getPort());
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(evo.MAX_ROUNDS);
+            out.writeInt(evo.MIN_ROUNDS);
+            out.writeBoolean(evo.randWeight);
+            out.writeDouble(evo.weight);
+            out.writeDouble(evo.EXPLOIT_COMPLY);
+            out.writeDouble(evo.COMPLY_EXPLOIT);
+            out.writeDouble(evo.COMPLY_COMPLY);
+            out.writeDouble(evo.EXPLOIT_EXPLOIT);
+            out.writeDouble(evo.actionNoise);
+            out.writeDouble(evo.perceptionNoise);
+            out.flush();
+        }
+
+        void sendGeneration(long generationSeed, List<String> classNames, short[] population) throws IOException {
+            out.writeByte(GENERATION);
+            out.writeLong(generationSeed);
+            out.writeInt(classNames.size());
+            for (String className : classNames)
+                out.writeUTF(className);
+            out.writeInt(population.length);
+            for (short strategy : population)
+                out.writeShort(strategy);
+            out.flush();
+        }
+
+        BlockResult playBlock(int block, int[] range) throws IOException {
+            out.writeByte(BLOCK);
+            out.writeInt(block);
+            for (int bound : range)
+                out.writeInt(bound);
+            out.flush();
+
+            if (in.readInt() != block)
+                throw new IOException("Worker answered for the wrong block");
+            BlockResult result = new BlockResult();
+            result.roundsPlayed = in.readLong();
+            result.firstScores = readScores(range[1] - range[0]);
+            if (range[2] != range[0])
+                result.secondScores = readScores(range[3] - range[2]);
+            return result;
+        }
+
+        private double[] readScores(int count) throws IOException {
+            double[] scores = new double[count];
+            for (int i = 0; i < count; i++)
+                scores[i] = in.readDouble();
+            return scores;
+        }
+
+        void close() {
+            try {
+                out.writeByte(CLOSE);
+                out.flush();
+            } catch (IOException e) {
+                // the worker is gone already
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package model;
+
+import Strategies.Prisoner;
+import Strategies.StrategyRegistry;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Class to simulate evolution of strategies on a lattice. The prisoners sit on the cells of a two dimensional torus,
+ * each plays only its neighbours, and at the end of a generation every cell takes the strategy of the fittest prisoner
+ * among itself and its neighbours (itself if tied). All cells are updated at the same time.
+ * <p>
+ * Like AggregateEvolution, a game depends only on the two strategies, so every pair of strategies is played once to
+ * build a payoff matrix and the grid stores strategy indices in primitive arrays. The score of a cell only depends on
+ * its neighbourhood, so only cells next to a cell that changed strategy are rescored, and only cells next to a
+ * rescored or changed cell decide again. The grid is split into square tiles that are skipped entirely when nothing
+ * near them changed, and the tiles that are left may be processed on multiple threads.
+ * <p>
+ * A cell that takes a neighbour's strategy gets a fresh prisoner of that strategy rather than an offspring, so
+ * strategies with a genome of their own (Prisoner.hasGenome()), which would never mutate here, are rejected.
+ */
+public class SpatialEvolution {
+
+    /** Width and height of the tiles the grid is split into */
+    private static final int TILE_SIZE = 32;
+    /** Number of tiles a single fork-join task processes before it stops splitting */
+    private static final int TILES_PER_TASK = 4;
+
+    /**
+     * The cells a prisoner plays against.
+     */
+    public enum Neighbourhood {
+        /** The four orthogonally adjacent cells */
+        VON_NEUMANN(new int[] {0, -1, 1, 0}, new int[] {-1, 0, 0, 1}),
+        /** The eight orthogonally and diagonally adjacent cells */
+        MOORE(new int[] {-1, 0, 1, -1, 1, -1, 0, 1}, new int[] {-1, -1, -1, 0, 0, 1, 1, 1});
+
+        /** Column offset of each neighbour */
+        private final int[] dx;
+        /** Row offset of each neighbour */
+        private final int[] dy;
+
+        Neighbourhood(int[] dx, int[] dy) {
+            this.dx = dx;
+            this.dy = dy;
+        }
+    }
+
+    /** Number of columns of the grid */
+    private final int width;
+    /** Number of rows of the grid */
+    private final int height;
+    /** The cells a prisoner plays against */
+    private final Neighbourhood neighbourhood;
+    /** The strategy class names, in the order used by the payoff matrix */
+    private final String[] strategyNames;
+    /** Expected payoff of a game, [strategy][opponent strategy] */
+    final double[][] payoffs;
+    /** Number of cells of each strategy */
+    private final int[] counts;
+    /** The current generation */
+    private int generation = 0;
+
+    /** The strategy of each cell, row by row */
+    private final int[] strategy;
+    /** The strategy each cell decided on for the next generation, only valid for cells marked as moved */
+    private final int[] nextStrategy;
+    /** The score of each cell against its neighbours */
+    private final double[] score;
+    /** Cells whose strategy changed in the last generation */
+    private final boolean[] changed;
+    /** Cells whose score changed in the current generation */
+    private final boolean[] rescored;
+    /** Cells that decided on a new strategy in the current generation */
+    private final boolean[] moved;
+
+    /** Number of tile columns */
+    private final int tilesX;
+    /** Number of tile rows */
+    private final int tilesY;
+    /** Tiles holding a changed cell */
+    private final boolean[] tileChanged;
+    /** Tiles holding a rescored cell */
+    private final boolean[] tileRescored;
+    /** Tiles holding a moved cell */
+    private final boolean[] tileMoved;
+    /** The tiles to process in the current phase, reused every phase */
+    private final int[] activeTiles;
+    /** The pool tiles are processed on, null if they are processed on the calling thread */
+    private ForkJoinPool pool;
+
+    /**
+     * Create a spatial evolutionary simulator with the prisoners placed on the grid at random.
+     * @param prisonerInitialization mapping of prisoner strategy class names to the number of that strategy to be
+     *                               created, the numbers must add up to the number of cells
+     * @param width number of columns of the grid
+     * @param height number of rows of the grid
+     * @param neighbourhood the cells a prisoner plays against
+     * @param maxRounds maximum number of rounds to occur in each "game" between two prisoners
+     * @param minRounds minimum number of rounds to occur in each "game" between two prisoners, for a constant number of
+     *                  rounds: maxRounds = minRounds + 1
+     * @param randSeed seed for the random number generator, null if no seed
+     * @param weight weight to be used in calculating the payoff to players each round, null if should be random (drawn
+     *               once per pair of strategies, as the payoff matrix is only built once)
+     * @param exploit_comply base payoff to the exploiter if the other prisoner complies
+     * @param comply_exploit base payoff to the player that complied if the other prisoner exploits
+     * @param comply_comply base payoff if both prisoners comply
+     * @param exploit_exploit base payoff if both prisoners exploit
+     * @throws ClassNotFoundException could not find a strategy class based on the string given
+     * @throws NoSuchMethodException could not acquire the constructor (no default constructor given)
+     * @throws IllegalAccessException the default constructor of a strategy cannot be accessed
+     */
+    public SpatialEvolution(HashMap<String, Integer> prisonerInitialization, int width, int height,
+                            Neighbourhood neighbourhood, int maxRounds, int minRounds, Integer randSeed, Double weight,
+                            double exploit_comply, double comply_exploit, double comply_comply, double exploit_exploit)
+            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException {
+
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("The grid needs at least one cell: " + width + "x" + height);
+
+        this.width = width;
+        this.height = height;
+        this.neighbourhood = neighbourhood;
+        Random r = randSeed != null ? new Random(randSeed) : new Random();
+        Evolution rules = new Evolution(new HashMap<>(), maxRounds, minRounds, randSeed, weight,
+                exploit_comply, comply_exploit, comply_comply, exploit_exploit);
+
+        // sorted so that the same initialization always places the same strategies, zeroed entries are ignored
+        TreeMap<String, Integer> sorted = new TreeMap<>();
+        for (HashMap.Entry<String, Integer> entry : prisonerInitialization.entrySet()) {
+            if (entry.getValue() > 0)
+                sorted.put(entry.getKey(), entry.getValue());
+        }
+        this.strategyNames = sorted.keySet().toArray(new String[0]);
+        List<Supplier<Prisoner>> strategies = new ArrayList<>();
+        this.counts = new int[strategyNames.length];
+
+        int numCells = width * height;
+        long numPrisoners = 0;
+        for (int numToAdd : sorted.values())
+            numPrisoners += numToAdd;
+        if (numPrisoners != numCells)
+            throw new IllegalArgumentException("The populations must add up to the " + numCells + " cells of the grid");
+
+        this.strategy = new int[numCells];
+        int cell = 0;
+        for (int i = 0; i < strategyNames.length; i++) {
+            strategies.add(StrategyRegistry.forName(strategyNames[i]));
+            if (strategies.get(i).get().hasGenome())
+                throw new IllegalArgumentException(strategyNames[i] + " has a genome of its own, which cannot evolve "
+                        + "on the grid");
+            counts[i] = sorted.get(strategyNames[i]);
+            Arrays.fill(strategy, cell, cell + counts[i], i);
+            cell += counts[i];
+        }
+
+        // Fisher-Yates shuffle of the cells
+        for (int i = numCells - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            int swap = strategy[i];
+            strategy[i] = strategy[j];
+            strategy[j] = swap;
+        }
+        this.payoffs = PayoffMatrix.build(strategies, rules, r);
+
+        this.nextStrategy = new int[numCells];
+        this.score = new double[numCells];
+        this.changed = new boolean[numCells];
+        this.rescored = new boolean[numCells];
+        this.moved = new boolean[numCells];
+
+        this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.tileChanged = new boolean[tilesX * tilesY];
+        this.tileRescored = new boolean[tilesX * tilesY];
+        this.tileMoved = new boolean[tilesX * tilesY];
+        this.activeTiles = new int[tilesX * tilesY];
+
+        // every cell starts out changed, so the first generation scores the whole grid
+        Arrays.fill(changed, true);
+        Arrays.fill(tileChanged, true);
+    }
+
+    /**
+     * Runs simulation of a single generation.
+     */
+    public void doGeneration() {
+        // rescore the cells next to a changed cell
+        forEachTile(tile -> tileChanged[tile] || tileRescored[tile] || nearby(tileChanged, tile), this::scoreTile);
+        // decide again for the cells next to a changed or rescored cell
+        forEachTile(tile -> nearby(tileChanged, tile) || nearby(tileRescored, tile), this::decideTile);
+
+        // move the cells to their new strategies, on the calling thread as the counts are shared
+        for (int tile = 0; tile < tileChanged.length; tile++) {
+            if (tileChanged[tile] || tileMoved[tile])
+                applyTile(tile);
+        }
+        generation++;
+    }
+
+    /**
+     * Marks the tiles that pass a test as active and processes them, on the pool if there is one.
+     * @param test decides whether a tile has to be processed
+     * @param work processes a single tile
+     */
+    private void forEachTile(IntPredicate test, IntConsumer work) {
+        int numActive = 0;
+        for (int tile = 0; tile < activeTiles.length; tile++) {
+            if (test.test(tile))
+                activeTiles[numActive++] = tile;
+        }
+
+        if (pool != null && numActive > TILES_PER_TASK) {
+            pool.invoke(new TileTask(work, 0, numActive));
+        } else {
+            for (int i = 0; i < numActive; i++)
+                work.accept(activeTiles[i]);
+        }
+    }
+
+    /**
+     * Recomputes the score of every cell of a tile next to a changed cell.
+     * Only the flags and scores of the tile itself are written.
+     * @param tile index of the tile
+     */
+    private void scoreTile(int tile) {
+        // the cells rescored in the last generation are not rescored anymore
+        if (tileRescored[tile]) {
+            forEachCell(tile, cell -> rescored[cell] = false);
+            tileRescored[tile] = false;
+        }
+
+        boolean anyRescored = false;
+        int x0 = (tile % tilesX) * TILE_SIZE;
+        int y0 = (tile / tilesX) * TILE_SIZE;
+        for (int y = y0; y < Math.min(y0 + TILE_SIZE, height); y++) {
+            for (int x = x0; x < Math.min(x0 + TILE_SIZE, width); x++) {
+                int cell = y * width + x;
+                if (!nearby(changed, x, y))
+                    continue;
+
+                double[] cellPayoffs = payoffs[strategy[cell]];
+                double newScore = 0;
+                for (int n = 0; n < neighbourhood.dx.length; n++)
+                    newScore += cellPayoffs[strategy[neighbour(x, y, n)]];
+
+                if (newScore != score[cell]) {
+                    score[cell] = newScore;
+                    rescored[cell] = true;
+                    anyRescored = true;
+                }
+            }
+        }
+        tileRescored[tile] = anyRescored;
+    }
+
+    /**
+     * Finds the fittest prisoner around every cell of a tile next to a changed or rescored cell.
+     * Only the flags and next strategies of the tile itself are written.
+     * @param tile index of the tile
+     */
+    private void decideTile(int tile) {
+        boolean anyMoved = false;
+        int x0 = (tile % tilesX) * TILE_SIZE;
+        int y0 = (tile / tilesX) * TILE_SIZE;
+        for (int y = y0; y < Math.min(y0 + TILE_SIZE, height); y++) {
+            for (int x = x0; x < Math.min(x0 + TILE_SIZE, width); x++) {
+                int cell = y * width + x;
+                if (!nearby(changed, x, y) && !nearby(rescored, x, y))
+                    continue;
+
+                // the prisoner keeps its own strategy unless a neighbour did strictly better
+                int fittest = cell;
+                for (int n = 0; n < neighbourhood.dx.length; n++) {
+                    int other = neighbour(x, y, n);
+                    if (score[other] > score[fittest])
+                        fittest = other;
+                }
+
+                if (strategy[fittest] != strategy[cell]) {
+                    nextStrategy[cell] = strategy[fittest];
+                    moved[cell] = true;
+                    anyMoved = true;
+                }
+            }
+        }
+        tileMoved[tile] = anyMoved;
+    }
+
+    /**
+     * Clears the changes of the last generation in a tile and moves its cells to their new strategies.
+     * @param tile index of the tile
+     */
+    private void applyTile(int tile) {
+        if (tileChanged[tile])
+            forEachCell(tile, cell -> changed[cell] = false);
+
+        if (tileMoved[tile]) {
+            forEachCell(tile, cell -> {
+                if (moved[cell]) {
+                    counts[strategy[cell]]--;
+                    counts[nextStrategy[cell]]++;
+                    strategy[cell] = nextStrategy[cell];
+                    changed[cell] = true;
+                    moved[cell] = false;
+                }
+            });
+        }
+        tileChanged[tile] = tileMoved[tile];
+        tileMoved[tile] = false;
+    }
+
+    /**
+     * Runs an action for every cell of a tile.
+     * @param tile index of the tile
+     * @param action receives the index of each cell
+     */
+    private void forEachCell(int tile, IntConsumer action) {
+        int x0 = (tile % tilesX) * TILE_SIZE;
+        int y0 = (tile / tilesX) * TILE_SIZE;
+        for (int y = y0; y < Math.min(y0 + TILE_SIZE, height); y++) {
+            for (int x = x0; x < Math.min(x0 + TILE_SIZE, width); x++)
+                action.accept(y * width + x);
+        }
+    }
+
+    /**
+     * @return index of neighbour n of a cell, wrapping around the edges of the grid
+     */
+    private int neighbour(int x, int y, int n) {
+        int nx = x + neighbourhood.dx[n];
+        int ny = y + neighbourhood.dy[n];
+        if (nx < 0)
+            nx += width;
+        else if (nx >= width)
+            nx -= width;
+        if (ny < 0)
+            ny += height;
+        else if (ny >= height)
+            ny -= height;
+        return ny * width + nx;
+    }
+
+    /**
+     * @return true if a cell or one of its neighbours is flagged
+     */
+    private boolean nearby(boolean[] flags, int x, int y) {
+        if (flags[y * width + x])
+            return true;
+        for (int n = 0; n < neighbourhood.dx.length; n++) {
+            if (flags[neighbour(x, y, n)])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Neighbours never lie further than one cell away, so they are always in the same or an adjacent tile.
+     * @return true if a tile or one of the eight tiles around it is flagged
+     */
+    private boolean nearby(boolean[] tileFlags, int tile) {
+        int tx = tile % tilesX;
+        int ty = tile / tilesX;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = (tx + dx + tilesX) % tilesX;
+                int ny = (ty + dy + tilesY) % tilesY;
+                if (tileFlags[ny * tilesX + nx])
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Enables processing the tiles on multiple threads. All cells are updated at the same time, so a seeded
+     * simulation produces the same grid whatever the number of threads.
+     * @param threads number of threads to process the tiles on, 0 to process them on the calling thread again
+     */
+    public void setParallelism(int threads) {
+        if (threads < 0)
+            throw new IllegalArgumentException("The number of threads cannot be negative: " + threads);
+
+        if (pool != null)
+            pool.shutdown();
+        pool = threads > 0 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Getter for the strategy of a cell.
+     * @param x column of the cell
+     * @param y row of the cell
+     * @return the strategy class name of the prisoner in the cell
+     */
+    public String getStrategy(int x, int y) {
+        return strategyNames[strategy[y * width + x]];
+    }
+
+    /**
+     * Places a prisoner of a strategy in a cell, replacing the prisoner in it.
+     * @param x column of the cell
+     * @param y row of the cell
+     * @param className strategy class name, one of the strategies the simulation was created with
+     */
+    public void setStrategy(int x, int y, String className) {
+        int index = Arrays.asList(strategyNames).indexOf(className);
+        if (index < 0)
+            throw new IllegalArgumentException("Unknown strategy: " + className);
+
+        int cell = y * width + x;
+        counts[strategy[cell]]--;
+        counts[index]++;
+        strategy[cell] = index;
+        changed[cell] = true;
+        tileChanged[(y / TILE_SIZE) * tilesX + x / TILE_SIZE] = true;
+    }
+
+    /**
+     * Getter for prisoner population sizes.
+     */
+    public Map<String, Integer> getPopulation() {
+        HashMap<String, Integer> population = new HashMap<>();
+        for (int i = 0; i < strategyNames.length; i++)
+            population.put(strategyNames[i], counts[i]);
+        return population;
+    }
+
+    /**
+     * Getter for the current generation.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Getter for the number of columns of the grid.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Getter for the number of rows of the grid.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Processes a range of the active tiles, splitting the range while it is large.
+     */
+    @SuppressWarnings("serial")
+    private class TileTask extends RecursiveAction {
+
+        private final IntConsumer work;
+        private final int from;
+        private final int to;
+
+        TileTask(IntConsumer work, int from, int to) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TILES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(work, from, mid), new TileTask(work, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++)
+                work.accept(activeTiles[i]);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package model;
+
+import java.io.PrintStream;
+
+/**
+ * Listener that prints the population at the end of every generation as text.
+ */
+public class TextHistoryWriter implements EvolutionListener {
+
+    /** Where the populations are printed */
+    private final PrintStream out;
+
+    /**
+     * Create a text history.
+     * @param out stream to print the populations to
+     */
+    public TextHistoryWriter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void generationCompleted(GenerationMetrics metrics) {
+        out.println("\nAt the conclusion of generation " + metrics.getGeneration() + ", the population is: "
+                + metrics.getPopulation());
+    }
+}
@@ -0,0 +1,26 @@
+package model;
+
+import Strategies.Prisoner;
+
+import java.util.List;
+
+/**
+ * Plays the round robin of a generation somewhere other than the calling thread.
+ * Every pairing draws its number of rounds and weight from its own random stream derived from the generation seed, so
+ * the games do not depend on the order they are played in.
+ */
+interface Tournament {
+
+    /**
+     * Plays every prisoner against every other prisoner exactly once.
+     * @param prisoners the population of the current generation
+     * @param generationSeed seed that all pairing random streams of this generation are derived from
+     * @return number of rounds played
+     */
+    long play(List<Prisoner> prisoners, long generationSeed);
+
+    /**
+     * Releases the threads and connections of this tournament.
+     */
+    void shutdown();
+}
@@ -0,0 +1,47 @@
+package model;
+
+import Strategies.Prisoner;
+
+import java.util.Random;
+
+/**
+ * Every prisoner of the next generation is the offspring of the fittest of a few prisoners drawn at random (with
+ * replacement) from the current generation.
+ */
+public class TournamentSelection implements SelectionOperator {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of prisoners competing in each tournament */
+    private final int tournamentSize;
+
+    /**
+     * Create a tournament selection operator.
+     * @param tournamentSize number of prisoners competing to reproduce for each place in the next generation
+     */
+    public TournamentSelection(int tournamentSize) {
+        if (tournamentSize < 1)
+            throw new IllegalArgumentException("A tournament needs at least one prisoner: " + tournamentSize);
+        this.tournamentSize = tournamentSize;
+    }
+
+    @Override
+    public int select(Prisoner[] population, double[] fitness, Prisoner[] next, Random r)
+            throws InstantiationException, IllegalAccessException {
+
+        int previousWinner = -1;
+        for (int i = 0; i < next.length; i++) {
+            int winner = r.nextInt(population.length);
+            for (int round = 1; round < tournamentSize; round++) {
+                int challenger = r.nextInt(population.length);
+                if (fitness[challenger] > fitness[winner])
+                    winner = challenger;
+            }
+            // the winner mates with the winner of the previous tournament
+            next[i] = SelectionOperator.offspring(population[winner],
+                    population[previousWinner >= 0 ? previousWinner : winner], r);
+            previousWinner = winner;
+        }
+        return next.length;
+    }
+}
@@ -0,0 +1,173 @@
+package model;
+
+import Strategies.Prisoner;
+import Strategies.StrategyRegistry;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Worker process of a sharded tournament. The worker listens on a local port, and every coordinator that connects
+ * gets its own session in which the worker plays the blocks of pairings it is sent (see ShardedTournament for the
+ * protocol). The worker keeps no state between sessions.
+ */
+public class TournamentWorker implements Closeable {
+
+    /** The socket coordinators connect to */
+    private final ServerSocket server;
+
+    /**
+     * Create a worker listening on the loopback interface.
+     * @param port port to listen on, 0 for any free port
+     * @throws IOException thrown when the port cannot be opened
+     */
+    public TournamentWorker(int port) throws IOException {
+        this.server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Getter for the port the worker listens on.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts coordinators until the worker is closed, serving each one on its own thread.
+     * @throws IOException thrown when accepting a connection fails for another reason than the worker being closed
+     */
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException e) {
+                if (server.isClosed())
+                    return;
+                throw e;
+            }
+            Thread session = new Thread(() -> runSession(socket), "tournament-worker");
+            session.setDaemon(true);
+            session.start();
+        }
+    }
+
+    /**
+     * Stops accepting coordinators. Sessions that are running end when their coordinator disconnects.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Serves a single coordinator, reporting failures on standard error as there is no one else to report them to.
+     */
+    private void runSession(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            new Session(s).run();
+        } catch (EOFException e) {
+            // the coordinator went away without saying goodbye
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Tournament session failed: " + e);
+        }
+    }
+
+    /**
+     * The state of a session with one coordinator.
+     */
+    private static class Session {
+
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        /** Holds the payoffs, rounds and weight of the coordinator's simulation */
+        private final Evolution rules;
+        /** Seed of the current generation */
+        private long generationSeed;
+        /** Factories of the strategy classes of the current generation */
+        private final List<Supplier<Prisoner>> strategies = new ArrayList<>();
+        /** Class index of every prisoner of the current generation */
+        private short[] population = new short[0];
+
+        Session(Socket socket) throws IOException, ReflectiveOperationException {
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if (in.readInt() != ShardedTournament.MAGIC)
+                throw new IOException("Not a tournament coordinator");
+            if (in.readInt() != ShardedTournament.VERSION)
+                throw new IOException("Unsupported protocol version");
+
+            int maxRounds = in.readInt();
+            int minRounds = in.readInt();
+            boolean randWeight = in.readBoolean();
+            double weight = in.readDouble();
+            rules = new Evolution(new HashMap<>(), maxRounds, minRounds, null, randWeight ? null : weight,
+                    in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+            rules.setNoise(in.readDouble(), in.readDouble());
+        }
+
+        void run() throws IOException, ReflectiveOperationException {
+            while (true) {
+                byte type = in.readByte();
+                if (type == ShardedTournament.GENERATION)
+                    readGeneration();
+                else if (type == ShardedTournament.BLOCK)
+                    playBlock();
+                else if (type == ShardedTournament.CLOSE)
+                    return;
+                else
+                    throw new IOException("Unknown message type " + type);
+            }
+        }
+
+        private void readGeneration() throws IOException, ReflectiveOperationException {
+            generationSeed = in.readLong();
+            int numClasses = in.readInt();
+            strategies.clear();
+            for (int i = 0; i < numClasses; i++) {
+                // the class is checked to be a strategy before it is initialized
+                Class<?> strategy = Class.forName(in.readUTF(), false, Prisoner.class.getClassLoader());
+                strategies.add(StrategyRegistry.register(strategy.asSubclass(Prisoner.class)));
+            }
+            population = new short[in.readInt()];
+            for (int i = 0; i < population.length; i++) {
+                population[i] = in.readShort();
+                if (population[i] < 0 || population[i] >= strategies.size())
+                    throw new IOException("Unknown strategy index " + population[i]);
+            }
+        }
+
+        private void playBlock() throws IOException {
+            int block = in.readInt();
+            int firstFrom = in.readInt();
+            int firstTo = in.readInt();
+            int secondFrom = in.readInt();
+            int secondTo = in.readInt();
+            if (firstFrom < 0 || firstFrom > firstTo || secondFrom < firstFrom || secondTo < secondFrom
+                    || secondTo > population.length)
+                throw new IOException("Block outside of the population");
+
+            ShardedTournament.BlockResult result = ShardedTournament.playBlock(rules, generationSeed, strategies,
+                    population, new int[] {firstFrom, firstTo, secondFrom, secondTo});
+
+            out.writeInt(block);
+            out.writeLong(result.roundsPlayed);
+            for (double score : result.firstScores)
+                out.writeDouble(score);
+            if (result.secondScores != null) {
+                for (double score : result.secondScores)
+                    out.writeDouble(score);
+            }
+            out.flush();
+        }
+    }
+}
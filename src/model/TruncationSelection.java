@@ -0,0 +1,87 @@
+package model;
+
+import Strategies.Prisoner;
+
+import java.util.Random;
+
+/**
+ * The better half of the population survives and the best prisoners each produce one offspring through evolve(), each
+ * mating with the next of the best prisoners.
+ * The survivors are found with a quickselect partition in linear time instead of sorting the whole population, so the
+ * survivors (and the offspring) are in no particular order.
+ */
+public class TruncationSelection implements SelectionOperator {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public int select(Prisoner[] population, double[] fitness, Prisoner[] next, Random r)
+            throws InstantiationException, IllegalAccessException {
+
+        int size = population.length;
+        int survivors = size - size / 2;
+        int offspring = size / 2;
+
+        // move the survivors to the front, then the parents to the front of the survivors
+        partition(population, fitness, 0, size, survivors);
+        partition(population, fitness, 0, survivors, offspring);
+
+        System.arraycopy(population, 0, next, 0, survivors);
+        for (int i = 0; i < offspring; i++)
+            next[survivors + i] = SelectionOperator.offspring(population[i], population[(i + 1) % offspring], r);
+        return offspring;
+    }
+
+    /**
+     * Reorders a range so that every prisoner before the split has a fitness at least as high as every prisoner after
+     * it (Hoare's quickselect with a median of three pivot).
+     * @param population prisoners to reorder
+     * @param fitness fitness of each prisoner, reordered together with the population
+     * @param from first index of the range, inclusive
+     * @param to last index of the range, exclusive
+     * @param split index separating the higher fitness prisoners from the lower fitness prisoners
+     */
+    static void partition(Prisoner[] population, double[] fitness, int from, int to, int split) {
+        int lo = from;
+        int hi = to - 1;
+
+        while (lo < split && split <= hi) {
+            double pivot = medianOfThree(fitness[lo], fitness[(lo + hi) >>> 1], fitness[hi]);
+            int i = lo;
+            int j = hi;
+
+            while (i <= j) {
+                while (fitness[i] > pivot)
+                    i++;
+                while (fitness[j] < pivot)
+                    j--;
+                if (i <= j)
+                    swap(population, fitness, i++, j--);
+            }
+
+            // [lo, j] is at least the pivot, [i, hi] at most the pivot and everything in between equals it
+            if (split <= j)
+                hi = j;
+            else if (split >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    private static double medianOfThree(double a, double b, double c) {
+        if (a > b)
+            return b > c ? b : Math.min(a, c);
+        return a > c ? a : Math.min(b, c);
+    }
+
+    private static void swap(Prisoner[] population, double[] fitness, int i, int j) {
+        Prisoner prisoner = population[i];
+        population[i] = population[j];
+        population[j] = prisoner;
+
+        double score = fitness[i];
+        fitness[i] = fitness[j];
+        fitness[j] = score;
+    }
+}